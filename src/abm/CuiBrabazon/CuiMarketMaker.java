@@ -16,8 +16,10 @@ package abm.CuiBrabazon;
 import abmlob.agents.Trader;
 import abmlob.events.Event;
 import abmlob.events.EvtEmptyBook;
+import abmlob.events.EvtSendOrderBatch;
 import abmlob.events.EvtSendNewOrder;
 import abmlob.orderbook.Order;
+import abmlob.orderbook.OrderBook;
 import ccloop.Consts;
 import ccloop.MarketState;
 import ccloop.MyException;
@@ -37,17 +39,17 @@ public class CuiMarketMaker extends Trader {
     @Override
     public void dispatch( Event evt, MarketState state ) {
     
-        if ( evt.getClass() == EvtEmptyBook.class ) {
+        if ( evt.typeId() == EvtEmptyBook.TYPE ) {
             
-            for (int i = 0; i < 3; i++) {   // three buy limit orders
-
-                Event tradeEvent = this.generateOrder( ((EvtEmptyBook)evt).bidSide, state, state.rng );
-
-                if ( tradeEvent != null ) {
+            OrderBook ob = state.getOrderBook( evt.instrument );   // refill the book that ran dry
+            EvtSendOrderBatch batch = newOrderBatch( state, ob.instrument, 7 );    // higher priority than EvtEmptyBook (6)
+            
+            for (int i = 0; i < 3; i++) {   // three limit orders, placed as one transaction
 
-                    state.eventQueue.queue.add( tradeEvent );
-                }
+                batch.addNewOrder( this.generateLimitOrder( ((EvtEmptyBook)evt).bidSide, ob, state, state.rng ) );
             }
+            
+            submitOrderBatch( batch, state );
         }
     }
     
@@ -64,6 +66,22 @@ public class CuiMarketMaker extends Trader {
     }
 
     public Event generateOrder( boolean buyOrder, MarketState state, RandNumGen rng ) {
+/*
+        return new EvtSendNewOrder( state.clock.addTime( state.clock.getCurTime(), latency ),
+                new Order( this, buyOrder, true, size, limPrice, null ),
+                7 );    // higher priority than EvtEmptyBook (6)
+*/
+        return new EvtSendNewOrder( state.eventQueue, state.clock.addTime( state.clock.getCurTime(), latency ),
+                generateLimitOrder( buyOrder, state, rng ),
+                7 );    // higher priority than EvtEmptyBook (6)
+    }
+    
+    public Order generateLimitOrder( boolean buyOrder, MarketState state, RandNumGen rng ) {
+        
+        return generateLimitOrder( buyOrder, state.orderBook, state, rng );
+    }
+    
+    public Order generateLimitOrder( boolean buyOrder, OrderBook ob, MarketState state, RandNumGen rng ) {
 
         // off-spread limit order size -\mu = 8.2166,\sigma = 0.9545
         int size = (int) Math.floor( rng.nextLogNormal(8.2166, 0.9545) );
@@ -80,7 +98,7 @@ public class CuiMarketMaker extends Trader {
 
         if ( buyOrder ) {
             
-            if ( state.orderBook.ask.isEmpty() ) {
+            if ( ob.ask.isEmpty() ) {
                 
                 delta += (int) ( defaultSpread / 2 );   // 25 + ...
                 limPrice = Consts.NULLPRICE - delta;
@@ -88,7 +106,7 @@ public class CuiMarketMaker extends Trader {
             else {
         
                 delta += defaultSpread; // 50 + ...
-                limPrice = state.orderBook.ask.first().limitPrice - delta;
+                limPrice = ob.getBestAsk() - delta;
             }
 
             // limPrice = (limPrice <= 0 ) ? 1 : limPrice;
@@ -100,7 +118,7 @@ public class CuiMarketMaker extends Trader {
         }
         else {
             
-            if ( state.orderBook.bid.isEmpty() ) {
+            if ( ob.bid.isEmpty() ) {
                 
                 delta += (int) ( defaultSpread / 2 );
                 limPrice = Consts.NULLPRICE + delta;
@@ -108,18 +126,10 @@ public class CuiMarketMaker extends Trader {
             else {
                 
                 delta += defaultSpread;
-                limPrice = state.orderBook.bid.first().limitPrice + delta;
+                limPrice = ob.getBestBid() + delta;
             }
         }
-/*
-        return new EvtSendNewOrder( state.clock.addTime( state.clock.getCurTime(), latency ),
-                new Order( this, buyOrder, true, size, limPrice, null ),
-                7 );    // higher priority than EvtEmptyBook (6)
-*/
-        return new EvtSendNewOrder( state.eventQueue, state.clock.addTime( state.clock.getCurTime(), latency ),
-                new Order( state.orderBook, this, buyOrder, true, size, limPrice, 
-                    state.clock.addTime( state.clock.getCurTime(), 300000 ) ),  // expires in 10 min * 60 sec * 1000 mili = 600000
-                7 );    // higher priority than EvtEmptyBook (6)
-
+        return state.orderPool.acquire( ob, this, buyOrder, true, size, limPrice, 
+                    state.clock.addTime( state.clock.getCurTime(), 300000 ) );  // expires in 10 min * 60 sec * 1000 mili = 600000
     }
 }
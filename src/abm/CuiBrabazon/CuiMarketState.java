@@ -15,13 +15,14 @@ package abm.CuiBrabazon;
 
 import abmlob.agents.Agent;
 import abmlob.events.*;
+import abmlob.orderbook.MatchingEngine;
 import abmlob.orderbook.Order;
+import abmlob.orderbook.OrderBook;
 import abmlob.orderbook.OrderCompByOrderTime;
 import ccloop.CSVWriter;
 import ccloop.MarketState;
 import ccloop.TimeStamp;
 import java.io.PrintWriter;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Locale;
@@ -66,9 +67,6 @@ public class CuiMarketState extends MarketState {
         
         super( randSeed );
         
-        // override default MatchingEngine
-        this.matchingEngine = new MarketImpactMatchingEngine(this, this.orderBook);
-
         this.burnInPeriod = clock.getCurTime();
         
         this.noOfMkImpObs = 0;
@@ -77,6 +75,12 @@ public class CuiMarketState extends MarketState {
         this.relLimDistHistory = new LinkedList();
     }
 
+    @Override
+    protected MatchingEngine newMatchingEngine( OrderBook ob ) {    // override default MatchingEngine
+        
+        return new MarketImpactMatchingEngine( this, ob );
+    }
+
     public Order oldestOfTwoOrders( Order o1, Order o2 ) {
         
         // wraps OrderCompByOrderTime, treats also null cases
@@ -145,9 +149,10 @@ public class CuiMarketState extends MarketState {
                 
         //---- only necessary for the CUI original model
 
-        if ( nextEvt.getClass() == EvtSendNewOrder.class ) {
+        if ( nextEvt.typeId() == EvtSendNewOrder.TYPE ) {
 
             Order o = ((EvtSendNewOrder)nextEvt).order;
+            OrderBook ob = getOrderBook( nextEvt.instrument );
             
             // if the market order is bigger then book depth, the market maker is called to fill the order book
             
@@ -155,17 +160,17 @@ public class CuiMarketState extends MarketState {
                 
                 if ( o.isBuy ) { // buy order
 
-                     if ( o.outstanding >= matchingEngine.orderBook.getBookDepth( false ) ) {   // check ask
+                     if ( o.outstanding >= ob.getBookDepth( false ) ) {   // check ask
 
-                         eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, false ) );  // higher priority
+                         eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, false ) );  // higher priority
                          skipFlag = true;
                      }
                 }
                 else {  // sell order
 
-                     if ( o.outstanding >= matchingEngine.orderBook.getBookDepth( true ) ) {   // check bid
+                     if ( o.outstanding >= ob.getBookDepth( true ) ) {   // check bid
                          
-                         eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, true ) );
+                         eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, true ) );
                          skipFlag = true;
                      }
                 }
@@ -178,18 +183,23 @@ public class CuiMarketState extends MarketState {
 
             dispatcher.dispatch( nextEvt, this );            
         
-            //---- check order book state after EvtNotifyTrade, EvtRemoveOrder, EvtOrderExpiration
+            //---- check order book state after EvtNotifyTrade, EvtRemoveOrder, EvtOrderExpiration, EvtSendOrderBatch with cancels
 
-            if ( Arrays.asList( EvtNotifyTrade.class, EvtRemoveOrder.class, EvtOrderExpiration.class ).contains( nextEvt.getClass() ) ) {
+            int type = nextEvt.typeId();
+            
+            if ( type == EvtNotifyTrade.TYPE || type == EvtNotifyMatch.TYPE || type == EvtRemoveOrder.TYPE || type == EvtOrderExpiration.TYPE
+                    || ( type == EvtSendOrderBatch.TYPE && ((EvtSendOrderBatch)nextEvt).hasCancels() ) ) {
 
-                if ( orderBook.bid.isEmpty() ) {
+                OrderBook ob = getOrderBook( nextEvt.instrument );
+                
+                if ( ob.bid.isEmpty() ) {
 
-                    eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, true ) ); // higher priority
+                    eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, true ) ); // higher priority
                 }
                     
-                if ( orderBook.ask.isEmpty() ) {
+                if ( ob.ask.isEmpty() ) {
                     
-                    eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, false ) );
+                    eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, false ) );
                 }
             }
         }
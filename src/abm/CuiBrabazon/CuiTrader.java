@@ -16,7 +16,6 @@ package abm.CuiBrabazon;
 import abmlob.agents.Trader;
 import abmlob.events.*;
 import abmlob.orderbook.Order;
-import abmlob.orderbook.WorkingQuote;
 import ccloop.*;
 
 public class CuiTrader extends Trader {
@@ -48,11 +47,20 @@ public class CuiTrader extends Trader {
     @Override
     public void dispatch( Event evt, MarketState state ) {
 
-        if ( evt.getClass() == EvtRandomPolling.class ) {
+        if ( evt.typeId() == EvtRandomPolling.TYPE ) {
 
             Event tradeEvent = this.trade( state, state.rng );
             
-            if ( tradeEvent != null ) {
+            if ( tradeEvent != null && tradeEvent.typeId() == EvtRemoveOrder.TYPE ) {
+                
+                Order o = ((EvtRemoveOrder)tradeEvent).order;
+                
+                if ( o.cancelRequest == null || !o.cancelRequest.isPending() ) {  // else the cancel already on its way wins
+                    
+                    o.cancelRequest = state.eventQueue.schedule( tradeEvent );   // retracted by the engine if o leaves the book first
+                }
+            }
+            else if ( tradeEvent != null ) {
             
                 state.eventQueue.queue.add( tradeEvent );
             }
@@ -117,9 +125,10 @@ public class CuiTrader extends Trader {
         }
         else {  // limit order
 
-            WorkingQuote bidask = state.orderBook.getBidAskSpread( null );
+            int bestBid = state.orderBook.getBestBid();
+            int bestAsk = state.orderBook.getBestAsk();
             
-            if ( bidask.bestAsk == 0 || bidask.bestBid == 0 ) {
+            if ( bestAsk == 0 || bestBid == 0 ) {
 
                 throw new MyException("CuiTrader.newRandOrder - order book should be filled");
             }
@@ -132,11 +141,11 @@ public class CuiTrader extends Trader {
                 
                 if ( isBuy ) {
                     
-                    limPrice = bidask.bestAsk;
+                    limPrice = bestAsk;
                 }
                 else {  // sell
                     
-                    limPrice = bidask.bestBid;
+                    limPrice = bestBid;
                 }
                 
                 // crossing limit order size - \mu = 8.4701,\sigma = 1.1982
@@ -148,8 +157,8 @@ public class CuiTrader extends Trader {
                 
                 if ( probAction <= 0.1010 ) { // inside-spread = 0.0032 + 0.0978
 
-                    limPrice = bidask.bestBid + 
-                            (int) Math.floor( rng.nextDouble() * ( bidask.bestAsk - bidask.bestBid ) );
+                    limPrice = bestBid + 
+                            (int) Math.floor( rng.nextDouble() * ( bestAsk - bestBid ) );
 
                     // inside-spread limit order size - \mu = 7.8709,\sigma = 0.9799
                     size = (int) Math.floor( rng.nextLogNormal( 7.8709, 0.9799 ) );
@@ -162,11 +171,11 @@ public class CuiTrader extends Trader {
                     
                         if ( isBuy ) {
 
-                            limPrice = bidask.bestBid;
+                            limPrice = bestBid;
                         }
                         else {  // sell
 
-                            limPrice = bidask.bestAsk;
+                            limPrice = bestAsk;
                         }
 
                         // spread limit order size -\mu = 7.8929,\sigma = 0.8571
@@ -187,13 +196,13 @@ public class CuiTrader extends Trader {
                         
                         if ( isBuy ) {
 
-                            limPrice = bidask.bestBid - delta;
+                            limPrice = bestBid - delta;
                             
                             //limPrice = (limPrice <= 0 ) ? 1 : limPrice;
                         }
                         else {  // sell
 
-                            limPrice = bidask.bestAsk + delta;
+                            limPrice = bestAsk + delta;
                         }
 
                         if (limPrice <= 0 ) {
@@ -210,7 +219,7 @@ public class CuiTrader extends Trader {
             }
         }
 
-        return new Order( state.orderBook, this, isBuy, !isMarket, size, limPrice, null );
+        return state.orderPool.acquire( state.orderBook, this, isBuy, !isMarket, size, limPrice, null );
     }
 
 
@@ -13,16 +13,14 @@
  */
 package abm.CuiBrabazon;
 
-import abmlob.events.Event;
-import abmlob.events.EvtNotifyQuoteChange;
-import abmlob.events.Handler;
+import abmlob.events.HdlNotifyQuoteChange;
 import abmlob.orderbook.Quote;
 import ccloop.MarketState;
 
-public class HdlCuiNotifyQuoteChange extends Handler {
+public class HdlCuiNotifyQuoteChange extends HdlNotifyQuoteChange {
  
     @Override
-    public void broadcast( Event evt, MarketState state ) {
+    public void processQuote( Quote q, MarketState state ) {
 
         //---- after burn-in period
         
@@ -30,8 +28,6 @@ public class HdlCuiNotifyQuoteChange extends Handler {
             
             CuiMarketState s = (CuiMarketState)state;
             
-            Quote q = ((EvtNotifyQuoteChange)evt).quote;
-            
             if ( q.bestBid != 0 && q.bestAsk != 0 ) {
                 
                 s.avSpread = ( s.avSpread * s.quoteCount + q.bestAsk - q.bestBid ) / ( s.quoteCount + 1 );
@@ -46,6 +42,6 @@ public class HdlCuiNotifyQuoteChange extends Handler {
         
         //---- store in MarketState
         
-        state.addQuote( ((EvtNotifyQuoteChange)evt).quote );
+        state.addQuote( q );
     }
 }
@@ -13,22 +13,18 @@
  */
 package abm.CuiBrabazon;
 
-import abmlob.events.Event;
-import abmlob.events.EvtNotifyTrade;
-import abmlob.events.Handler;
+import abmlob.events.HdlNotifyTrade;
 import abmlob.orderbook.Trade;
 import ccloop.Consts;
 import ccloop.MarketState;
 
-public class HdlCuiNotifyTrade extends Handler {
+public class HdlCuiNotifyTrade extends HdlNotifyTrade {
     
     @Override
-    public void broadcast( Event evt, MarketState state ) {
+    public void processTrade( Trade t, MarketState state ) {
 
         CuiMarketState cuiState = (CuiMarketState)state;
         
-        Trade t = ((EvtNotifyTrade)evt).trade;
-        
         double percRet;
 
         if ( cuiState.tradeHistory.isEmpty() ) {
@@ -44,7 +40,7 @@ public class HdlCuiNotifyTrade extends Handler {
         
         if ( state.clock.getCurTime().compareTo( cuiState.burnInPeriod ) == 1 ) {
             
-            cuiState.tradeCnt++;
+            cuiState.tradeCnt += t.getNoOfFills();  // a level print counts each passive fill
             cuiState.tradeVol += t.size;
             
             cuiState.sumRet += percRet;
@@ -53,6 +49,6 @@ public class HdlCuiNotifyTrade extends Handler {
         
         //----- store in MarketState
         
-        state.addTrade( ((EvtNotifyTrade)evt).trade );
+        state.addTrade( t );
     }
 }
\ No newline at end of file
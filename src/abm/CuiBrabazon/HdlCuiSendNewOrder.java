@@ -17,7 +17,7 @@ import abmlob.events.Event;
 import abmlob.events.EvtSendNewOrder;
 import abmlob.events.Handler;
 import abmlob.orderbook.Order;
-import abmlob.orderbook.WorkingQuote;
+import abmlob.orderbook.OrderBook;
 import ccloop.MarketState;
 
 public class HdlCuiSendNewOrder extends Handler {
@@ -32,100 +32,105 @@ public class HdlCuiSendNewOrder extends Handler {
         if ( state.clock.getCurTime().compareTo( ((CuiMarketState)state).burnInPeriod ) == 1 ) {
 
             CuiMarketState s = (CuiMarketState)state;
-            WorkingQuote q = s.matchingEngine.orderBook.getBidAskSpread( null );
+            OrderBook ob = s.getOrderBook( evt.instrument );
+            int bestBid = ob.getBestBid();
+            int bestAsk = ob.getBestAsk();
 
-            Order o = ((EvtSendNewOrder)evt).order;
+            classifyOrder( ((EvtSendNewOrder)evt).order, s, bestBid, bestAsk );
+        }
+        
+        //---- send instruction to market
+        
+        state.getMatchingEngine( evt.instrument ).dispatch(evt);
+    }
+    
+    protected void classifyOrder( Order o, CuiMarketState s, int bestBid, int bestAsk ) {  // bestBid/bestAsk of the order's book, as seen before the order is placed
 
-            if ( o.agent.getClass() == CuiMarketMaker.class ) {
+        if ( o.agent.getClass() == CuiMarketMaker.class ) {
 
-                s.mmOrdCnt++;
-            }
-            else {  // no market maker
+            s.mmOrdCnt++;
+        }
+        else {  // no market maker
 
-                if ( !o.isLimit ) { // market
+            if ( !o.isLimit ) { // market
 
-                    s.mkOrdCnt++;
+                s.mkOrdCnt++;
+                
+                long availableDepth;
+                
+                if ( o.isBuy ) {
                     
-                    int availableDepth;
+                    availableDepth = s.getOrderBook( o.getInstrument() ).getBookDepth( false );
+                }
+                else {  // sell
                     
-                    if ( o.isBuy ) {
-                        
-                        availableDepth = s.matchingEngine.orderBook.getBookDepth( false );
-                    }
-                    else {  // sell
-                        
-                        availableDepth = s.matchingEngine.orderBook.getBookDepth( true );
-                    }
+                    availableDepth = s.getOrderBook( o.getInstrument() ).getBookDepth( true );
+                }
+                
+                if ( o.outstanding >= availableDepth ) {
                     
-                    if ( o.outstanding >= availableDepth ) {
-                        
-                        s.iocOrders++;
-                    }
+                    s.iocOrders++;
                 }
-                else {  // limit order
+            }
+            else {  // limit order
 
-                    if ( o.isBuy ) {
+                if ( o.isBuy ) {
 
-                        if ( o.limitPrice >= q.bestAsk ) {
-                            
-                            s.effCrossLimOrdCnt++;
+                    if ( o.limitPrice >= bestAsk ) {
+                        
+                        s.effCrossLimOrdCnt++;
+                    }
+                    else {
+                        
+                        if ( o.limitPrice > bestBid ) {
+
+                            s.effInSprLimOrdCnt++;
                         }
                         else {
-                            
-                            if ( o.limitPrice > q.bestBid ) {
 
-                                s.effInSprLimOrdCnt++;
+                            if ( o.limitPrice == bestBid ) {
+                                
+                                s.effSprLimOrdCnt++;
                             }
-                            else {
-
-                                if ( o.limitPrice == q.bestBid ) {
-                                    
-                                    s.effSprLimOrdCnt++;
-                                }
-                                else {  // o.limitPrice < q.bestBid
-                                    
-                                    s.effOffSprLimOrdCnt++;
-
-                                    s.relLimDistHistory.add(
-                                        new OffSpreadRelLimDist( s.clock.getCurTime(), q.bestBid - o.limitPrice ) );
-                                }
+                            else {  // o.limitPrice < bestBid
+                                
+                                s.effOffSprLimOrdCnt++;
+
+                                s.relLimDistHistory.add(
+                                    new OffSpreadRelLimDist( s.clock.getCurTime(), bestBid - o.limitPrice ) );
                             }
                         }
                     }
-                    else {  // sell
+                }
+                else {  // sell
+
+                    if ( o.limitPrice <= bestBid ) {
+                        
+                        s.effCrossLimOrdCnt++;
+                    }
+                    else {
+                        
+                        if ( o.limitPrice < bestAsk ) {
 
-                        if ( o.limitPrice <= q.bestBid ) {
-                            
-                            s.effCrossLimOrdCnt++;
+                            s.effInSprLimOrdCnt++;
                         }
                         else {
-                            
-                            if ( o.limitPrice < q.bestAsk ) {
-
-                                s.effInSprLimOrdCnt++;
+                        
+                            if ( o.limitPrice == bestAsk ) {
+                                
+                                s.effSprLimOrdCnt++;
                             }
-                            else {
-                            
-                                if ( o.limitPrice == q.bestAsk ) {
-                                    
-                                    s.effSprLimOrdCnt++;
-                                }
-                                else {  // o.limitPrice > q.bestAsk
-                                    
-                                    s.effOffSprLimOrdCnt++;
-
-                                    s.relLimDistHistory.add(
-                                        new OffSpreadRelLimDist( s.clock.getCurTime(), o.limitPrice - q.bestAsk ) );
-                                }
+                            else {  // o.limitPrice > bestAsk
+                                
+                                s.effOffSprLimOrdCnt++;
+
+                                s.relLimDistHistory.add(
+                                    new OffSpreadRelLimDist( s.clock.getCurTime(), o.limitPrice - bestAsk ) );
                             }
-                        }                    
-                    }
+                        }
+                    }                    
                 }
             }
         }
-        
-        //---- send instruction to market
-        
-        state.matchingEngine.dispatch(evt);
     }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abm.CuiBrabazon;
+
+import abmlob.events.Event;
+import abmlob.events.EvtSendOrderBatch;
+import abmlob.orderbook.OrderBook;
+import ccloop.MarketState;
+
+public class HdlCuiSendOrderBatch extends HdlCuiSendNewOrder {
+    
+    @Override
+    public void broadcast( Event evt, MarketState state ) {
+      
+        //---- clasify the new orders of the batch against the book before the batch
+        
+        if ( state.clock.getCurTime().compareTo( ((CuiMarketState)state).burnInPeriod ) == 1 ) {
+
+            CuiMarketState s = (CuiMarketState)state;
+            OrderBook ob = s.getOrderBook( evt.instrument );
+            int bestBid = ob.getBestBid();
+            int bestAsk = ob.getBestAsk();
+
+            for ( EvtSendOrderBatch.Leg l : ((EvtSendOrderBatch)evt).legs ) {
+                
+                if ( l.op == EvtSendOrderBatch.NEW ) {
+                    
+                    classifyOrder( l.order, s, bestBid, bestAsk );
+                }
+            }
+        }
+        
+        //---- send the whole batch to market
+        
+        state.getMatchingEngine( evt.instrument ).dispatch(evt);
+    }
+}
@@ -15,6 +15,7 @@ package abm.CuiBrabazon;
 
 import abmlob.events.*;
 import abmlob.orderbook.*;
+import ccloop.Consts;
 import ccloop.MarketState;
 import ccloop.MyException;
 import ccloop.TimeStamp;
@@ -31,53 +32,77 @@ public class MarketImpactMatchingEngine extends MatchingEngine {
 
         TimeStamp operTime = state.clock.getCurTime();
         
-        WorkingQuote currentQuote = orderBook.getWorkingQuote( null );
+        long topVersion = orderBook.getTopVersion();
+        orderBook.copyTopTo( quoteBefore );
+        
+        BookDeltaListener deltas = orderBook.getDeltaListener();
+        
+        if ( deltas != null ) { deltas.beginEvent( operTime ); }
         
         int initOrderSize = 0;
         
-        if ( evt.getClass() == EvtSendNewOrder.class ) {
+        boolean isNewOrder = ( evt.typeId() == EvtSendNewOrder.TYPE );
+        
+        if ( isNewOrder ) {
 
             initOrderSize = ((EvtSendNewOrder)evt).order.outstanding;   // for market impact
-            
-            if ( validateOrder( ((EvtSendNewOrder)evt).order, operTime ) ) {
-
-                placeNewOrder( ((EvtSendNewOrder)evt).order, operTime, evt );   // returns tracePrice
-            }
-            // else do nothing
         }
         
-        if ( evt.getClass() == EvtModifyOrder.class ) {
+        if ( evt.typeId() == EvtSendOrderBatch.TYPE ) {
+            
+            acceptBatch( (EvtSendOrderBatch)evt, operTime );    // market impact of every market order leg
+        }
+        else {
             
-            modifyOrder( ((EvtModifyOrder)evt).order, operTime, 
-                    ((EvtModifyOrder)evt).newLimitPrice, 
-                    ((EvtModifyOrder)evt).newOutstanding, evt );   // returns tracePrice
+            evt.accept( this, operTime );   // new order, modify, cancel or expiration; no-op for other events
         }
         
-        if ( evt.getClass() == EvtRemoveOrder.class ) {
+        //---- after order processing
         
-            removeOrder( ((EvtRemoveOrder)evt).order, 5, operTime, evt );    // cancel
-        }
+        if ( orderBook.isTopChangedSince( topVersion ) && !orderBook.isTopEqualTo( quoteBefore ) ) {
 
-        if ( evt.getClass() == EvtOrderExpiration.class ) {
-        
-            removeOrder( ((EvtOrderExpiration)evt).order, 6, operTime, evt );    // expiration
+            // best bid/ask change: market order, limit order (crossing, at- or inside-spread), cancel or expire limit order
+            
+            publishQuote( operTime );
         }
         
-        //---- after order processing
+        flushNotifications( operTime );
         
-        WorkingQuote updatedQuote = orderBook.getWorkingQuote( operTime );
+        if ( deltas != null ) { deltas.endEvent(); }
         
-        if ( !updatedQuote.equals( currentQuote ) ) {
-
-            // best bid/ask change: market order, limit order (crossing, at- or inside-spread), cancel or expire limit order
+        if ( Consts.DEBUGBOOK ) { orderBook.checkConsistency(); }
+        
+        if ( isNewOrder ) {
             
-            Quote q = new Quote( orderBook, updatedQuote );
-
-            if ( !state.eventQueue.queue.add( new EvtNotifyQuoteChange( state.eventQueue, operTime, q ) ) ) { // priority 8
+            addMarketImpact( ((EvtSendNewOrder)evt).order, initOrderSize, quoteBefore.bestBid, quoteBefore.bestAsk, operTime );
+        }
+        
+        releaseRetired();
+    }
+    
+    private void acceptBatch( EvtSendOrderBatch batch, TimeStamp operTime ) {     // legs one by one, each market order measured against the quote just before it
+        
+        for ( int i = 0; i < batch.legs.size(); i++ ) {
+            
+            EvtSendOrderBatch.Leg l = batch.legs.get(i);
+            
+            if ( l.op != EvtSendOrderBatch.NEW || l.order.isLimit ) {
                 
-                throw new MyException("MatchingEngine.dispatch: could not add EvtNotifyQuoteChange to state.eventQueue.queue");
+                batch.accept( this, operTime, i );
+                continue;
             }
+            
+            int initOrderSize = l.order.outstanding;
+            int bidBefore = orderBook.getBestBid();
+            int askBefore = orderBook.getBestAsk();
+            
+            batch.accept( this, operTime, i );
+            
+            addMarketImpact( l.order, initOrderSize, bidBefore, askBefore, operTime );
         }
+    }
+    
+    private void addMarketImpact( Order o, int initOrderSize, int bidBefore, int askBefore, TimeStamp operTime ) {
         
         //--- compute price market impact (before/after log mid-quote difference)
 
@@ -87,15 +112,14 @@ public class MarketImpactMatchingEngine extends MatchingEngine {
             
             // only new market orders and valid quotes
             
-            if ( evt.getClass() == EvtSendNewOrder.class && !((EvtSendNewOrder)evt).order.isLimit &&
-                    currentQuote.bestBid != 0 && currentQuote.bestAsk != 0 && 
-                    updatedQuote.bestBid != 0 && updatedQuote.bestAsk != 0 ) {
+            if ( !o.isLimit && bidBefore != 0 && askBefore != 0 && 
+                    orderBook.getBestBid() != 0 && orderBook.getBestAsk() != 0 ) {
 
                 // if IOC, the original market order has been transformed into a limit order and thus not taken into consideration
 
-                double mkImp = ( ((EvtSendNewOrder)evt).order.isBuy ? 1 : -1 ) * 
-                        Math.log( (double) ( updatedQuote.bestBid + updatedQuote.bestAsk ) / 
-                        ( currentQuote.bestBid + currentQuote.bestAsk ) );
+                double mkImp = ( o.isBuy ? 1 : -1 ) * 
+                        Math.log( (double) ( orderBook.getBestBid() + orderBook.getBestAsk() ) / 
+                        ( bidBefore + askBefore ) );
 
                 ((CuiMarketState)state).marketImpactSeries.add( 
                         new MarketImpact ( (CuiMarketState)state, initOrderSize, mkImp ) );
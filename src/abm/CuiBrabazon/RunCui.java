@@ -26,6 +26,8 @@ public class RunCui {
         // One day + 1 Hour (burn in) = 34,200,000
         
         Consts.TIMETICKSPERDAY = 34200000; // 7200000
+        Consts.BOOKTYPE = 1;    // price levels with FIFO queues (0 - TreeSet of orders)
+        Consts.QUEUETYPE = 2;   // timing wheel over absolute ticks (0 - TreeSet of events, 1 - heap on packed keys)
 
         Consts.DEBUGMODE = false;    // fast debugging
         Consts.DEBUGSUMMARY = false;
@@ -45,10 +45,13 @@ public class CuiMicroABModel {
         dispatcher.registerChannel( EvtRandomPolling.class, new HdlCuiLowFreqPolling() );
         dispatcher.registerChannel( EvtEmptyBook.class, new HdlCuiEmptyBook() );
         dispatcher.registerChannel( EvtSendNewOrder.class, new HdlCuiSendNewOrder() );
+        dispatcher.registerChannel( EvtSendOrderBatch.class, new HdlCuiSendOrderBatch() );
         dispatcher.registerChannel( EvtRemoveOrder.class, new HdlRemoveOrder() );
         dispatcher.registerChannel( EvtOrderExpiration.class, new HdlRemoveOrder() );
+        dispatcher.registerChannel( EvtAuction.class, new HdlAuction() );  // only used once state.matchingEngine.startAuctions() is called
         dispatcher.registerChannel( EvtNotifyTrade.class, new HdlMicroNotifyTrade() );
         dispatcher.registerChannel( EvtNotifyQuoteChange.class, new HdlCuiNotifyQuoteChange() );
+        dispatcher.registerChannel( EvtNotifyMatch.class, new HdlNotifyMatch( new HdlMicroNotifyTrade(), new HdlCuiNotifyQuoteChange() ) );
 
         //----- logic starts here ---------------------------
 
@@ -91,12 +94,12 @@ public class CuiMicroABModel {
     
         //------ cycle through events
 
-        while ( !state.eventQueue.queue.isEmpty() 
-              && ( state.eventQueue.queue.first().eventTime.day < endTime.day 
-                 || ( state.eventQueue.queue.first().eventTime.day == endTime.day && state.eventQueue.queue.first().eventTime.timeTick <= endTime.timeTick ) )
-              ) {
-
+        Event next = state.eventQueue.queue.first();
+        
+        while ( next != null && next.eventTime.compareTo( endTime ) <= 0 ) {
+            
             state.processNextEvent( dispatcher );
+            next = state.eventQueue.queue.first();
         }
 
     }
@@ -15,7 +15,7 @@ package abm.CuiBrabazonMicro;
 
 import abm.CuiBrabazon.CuiMarketState;
 import abmlob.events.*;
-import java.util.Arrays;
+import abmlob.orderbook.OrderBook;
 
 public class CuiMicroMarketState extends CuiMarketState{
     
@@ -35,25 +35,28 @@ public class CuiMicroMarketState extends CuiMarketState{
     @Override
     public void processNextEvent ( EventDispatcher dispatcher ) {
         
-        Event nextEvt = eventQueue.queue.first();
-            
-        eventQueue.queue.pollFirst();
+        Event nextEvt = eventQueue.queue.pollFirst();
 
         dispatcher.dispatch( nextEvt, this );            
 
-        //---- check order book state after EvtNotifyTrade, EvtRemoveOrder, EvtOrderExpiration
-        // or EvtNotifyQuoteChange: if ( nextEvt.getClass() == EvtNotifyQuoteChange.class )
+        //---- check order book state after EvtNotifyTrade, EvtRemoveOrder, EvtOrderExpiration, EvtSendOrderBatch with cancels
+        // or EvtNotifyQuoteChange: if ( nextEvt.typeId() == EvtNotifyQuoteChange.TYPE )
+        
+        int type = nextEvt.typeId();
 
-        if ( Arrays.asList( EvtNotifyTrade.class, EvtRemoveOrder.class, EvtOrderExpiration.class ).contains( nextEvt.getClass() ) ) {
+        if ( type == EvtNotifyTrade.TYPE || type == EvtNotifyMatch.TYPE || type == EvtRemoveOrder.TYPE || type == EvtOrderExpiration.TYPE
+                || ( type == EvtSendOrderBatch.TYPE && ((EvtSendOrderBatch)nextEvt).hasCancels() ) ) {
 
-            if ( orderBook.bid.isEmpty() ) {
+            OrderBook ob = getOrderBook( nextEvt.instrument );
+            
+            if ( ob.bid.isEmpty() ) {
 
-                eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, true ) ); // higher priority
+                eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, true ) ); // higher priority
             }
 
-            if ( orderBook.ask.isEmpty() ) {
+            if ( ob.ask.isEmpty() ) {
 
-                eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), 6, false ) );
+                eventQueue.queue.add( new EvtEmptyBook( eventQueue, clock.getCurTime(), ob.instrument, 6, false ) );
             }
         }
     }
@@ -14,22 +14,18 @@
 package abm.CuiBrabazonMicro;
 
 import abm.CuiBrabazon.CuiMarketState;
-import abmlob.events.Event;
-import abmlob.events.EvtNotifyTrade;
-import abmlob.events.Handler;
+import abmlob.events.HdlNotifyTrade;
 import abmlob.orderbook.Trade;
 import ccloop.Consts;
 import ccloop.MarketState;
 
-public class HdlMicroNotifyTrade extends Handler {
+public class HdlMicroNotifyTrade extends HdlNotifyTrade {
 
     @Override
-    public void broadcast( Event evt, MarketState state ) {
+    public void processTrade( Trade t, MarketState state ) {
 
         CuiMarketState cuiState = (CuiMarketState)state;
         
-        Trade t = ((EvtNotifyTrade)evt).trade;
-        
         ((CuiMicroMarketState)cuiState).mt.emaPrice = 0.95 * ((CuiMicroMarketState)cuiState).mt.emaPrice + 0.05 * t.price;
         
         double percRet;
@@ -50,7 +46,7 @@ public class HdlMicroNotifyTrade extends Handler {
         
         if ( state.clock.getCurTime().compareTo( cuiState.burnInPeriod ) == 1 ) {
             
-            cuiState.tradeCnt++;
+            cuiState.tradeCnt += t.getNoOfFills();  // a level print counts each passive fill
             cuiState.tradeVol += t.size;
             
             cuiState.sumRet += percRet;
@@ -59,6 +55,6 @@ public class HdlMicroNotifyTrade extends Handler {
         
         //----- store in MarketState
         
-        state.addTrade( ((EvtNotifyTrade)evt).trade );
+        state.addTrade( t );
     }
 }
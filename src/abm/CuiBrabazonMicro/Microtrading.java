@@ -14,10 +14,10 @@
 package abm.CuiBrabazonMicro;
 
 import abmlob.agents.Agent;
+import abmlob.orderbook.BookSide;
+import abmlob.orderbook.DepthView;
 import abmlob.orderbook.Order;
-import abmlob.orderbook.WorkingQuote;
 import ccloop.*;
-import java.util.Iterator;
 
 // order placement
 // in: investment decision, out: market/ limit order
@@ -74,7 +74,8 @@ public class Microtrading {
 
         //------ get best quote
         
-        WorkingQuote bestQuote = state.orderBook.getBidAskSpread( null );
+        int bestBid = state.orderBook.getBestBid();
+        int bestAsk = state.orderBook.getBestAsk();
 
         //------ set base & spread
 
@@ -82,17 +83,17 @@ public class Microtrading {
 
         if ( isBuy ) {
             
-            if ( bestQuote.bestAsk != 0 ) {
+            if ( bestAsk != 0 ) {
                 
-                base = bestQuote.bestAsk;
+                base = bestAsk;
             }
             else {
                 
                 // alternatively previous valid ask quote from state.quoteHistory
                 
-                if ( bestQuote.bestBid != 0 ) {
+                if ( bestBid != 0 ) {
                     
-                    base = bestQuote.bestBid;
+                    base = bestBid;
                 }
                 else {
                     
@@ -102,15 +103,15 @@ public class Microtrading {
         }
         else {
             
-            if ( bestQuote.bestBid != 0 ) {
+            if ( bestBid != 0 ) {
                 
-                base = bestQuote.bestBid;
+                base = bestBid;
             }
             else {
                 
-                if ( bestQuote.bestAsk != 0 ) {
+                if ( bestAsk != 0 ) {
 
-                    base = bestQuote.bestAsk;
+                    base = bestAsk;
                 }
                 else {
 
@@ -119,8 +120,8 @@ public class Microtrading {
             }
         }
 
-        double percSpread = ( bestQuote.bestBid != 0 && bestQuote.bestAsk != 0) ? 
-                (double) ( bestQuote.bestAsk - bestQuote.bestBid ) * 100 / base : (double) 100 / base;
+        double percSpread = ( bestBid != 0 && bestAsk != 0) ? 
+                (double) ( bestAsk - bestBid ) * 100 / base : (double) 100 / base;
 
         //------ set relative benchmarks
         
@@ -226,7 +227,7 @@ public class Microtrading {
         
         if ( mkOrdFitness <= limOrdFitness ) {
             
-            return new Order( state.orderBook, a, isBuy, false, size, 0, null ); // market order
+            return state.orderPool.acquire( state.orderBook, a, isBuy, false, size, 0, null ); // market order
         }
         else {  // isLimit
 
@@ -248,25 +249,21 @@ public class Microtrading {
                 throw new MyException("Microtrading.articulateOrder - limitPrice must be strictly positive");
             }
 
-            return new Order( state.orderBook, a, isBuy, true, size, limitPrice, expiryTimeStamp );
+            return state.orderPool.acquire( state.orderBook, a, isBuy, true, size, limitPrice, expiryTimeStamp );
         }
     }
     
     public double[] getOptimalLimDist ( boolean isBuy, int base, double bm1, double sigma1, double bm2, double sigma2, int adv, double A, double beta ) {
 
-        Iterator<Order> bookIterator;
-        int inc;
+        int inc = isBuy ? 1 : -1;
         
-        if ( isBuy ) {
-
-            bookIterator = state.orderBook.bid.iterator();
-            inc = 1;
-        }
-        else {
-
-            bookIterator = state.orderBook.ask.iterator();
-            inc = -1;
-        }
+        //------ own side price levels, the top K come from the depth view
+        
+        DepthView view = state.orderBook.getDepthView( isBuy );
+        
+        int levels = view.levels;
+        int[] levelPrice = view.price;
+        long[] levelSize = view.size;
 
         //------ start numerical procedure
        
@@ -279,37 +276,36 @@ public class Microtrading {
         
         double deltaMax = getStoppingPoint( bm1, sigma1, bm2, sigma2, A, beta );
         
-        int curPriceLevel = 0, queueSize = 0;
+        long queueSize = 0;
         
-        while ( bookIterator.hasNext() && delta < deltaMax ) {
-            
-            Order o = bookIterator.next();
+        for ( int i = 0; i < levels && delta < deltaMax; i++ ) {
             
-            if ( o.limitPrice != curPriceLevel ) { // new level
+            if ( i == view.maxLevels - 1 && !view.complete ) {  // deeper than the view: copy the whole side (rare)
+                
+                BookSide side = state.orderBook.side( isBuy );
+                
+                levelPrice = new int[side.size()];
+                levelSize = new long[side.size()];
+                levels = side.copyLevels( levelPrice, levelSize, new int[side.size()], side.size() );
+            }
 
-                //----- try delta just in front of this level or deltaMax
+            //----- try delta just in front of this level or deltaMax
 
-                delta = (double) Math.abs( o.limitPrice - base + inc ) * 100 / base;
+            delta = (double) Math.abs( levelPrice[i] - base + inc ) * 100 / base;
 
-                delta = ( delta > deltaMax ) ? deltaMax : delta;    // cut-off
+            delta = ( delta > deltaMax ) ? deltaMax : delta;    // cut-off
 
-                percQueue = (double) queueSize * 100 / adv;
-                
-                double fit = compDeltaQueueFit( delta, percQueue, bm1, sigma1, bm2, sigma2, A, beta );
+            percQueue = (double) queueSize * 100 / adv;
 
-                if ( fit < bestFit ) {
-                    
-                    bestFit = fit;
-                    bestDelta = delta;
-                }
+            double fit = compDeltaQueueFit( delta, percQueue, bm1, sigma1, bm2, sigma2, A, beta );
 
-                curPriceLevel = o.limitPrice;
-                queueSize += o.outstanding; 
-            }
-            else {
-            
-                queueSize += o.outstanding; 
+            if ( fit < bestFit ) {
+
+                bestFit = fit;
+                bestDelta = delta;
             }
+
+            queueSize += levelSize[i]; 
         }
 
         if ( delta < deltaMax ) {   // check also deltaMax
@@ -381,38 +377,23 @@ public class Microtrading {
     
     public double getMkImp ( boolean isBuy, int outstanding ) {
 
-        int bestPrice = 0, tracePrice = 0;
-
-        Iterator<Order> bookIterator;
+        // a buy market order sweeps the ask side and vice versa
         
-        if ( isBuy ) {
-            
-            bookIterator = state.orderBook.ask.iterator();
-            bestPrice = state.orderBook.getBidAskSpread( null ).bestAsk;
-        }
-        else {
-            
-            bookIterator = state.orderBook.bid.iterator();
-            bestPrice = state.orderBook.getBidAskSpread( null ).bestBid;
-        }
-
-        while ( outstanding > 0 && bookIterator.hasNext() ) {
-
-            Order o = bookIterator.next();
-
-            tracePrice = o.limitPrice;
-            outstanding -= o.outstanding;
-        }
+        int bestPrice = isBuy ? state.orderBook.getBestAsk() : state.orderBook.getBestBid();
+        
+        // same answers as walking the side order by order: -1 if the walk runs out of orders or stops
+        // exactly on the last share of one ( outstanding left at 0 )
         
-        if ( outstanding >= 0 ) {   // the market order cannot be entirely filled or the order book is emptied
+        if ( outstanding == 0 || outstanding >= state.orderBook.getBookDepth( !isBuy )
+                || state.orderBook.isSweepOnOrderBoundary( !isBuy, outstanding ) ) {   // the market order cannot be entirely filled or the order book is emptied
             
             return ( -1.0 );
         }
-        else {
         
-            double percImp = (double) Math.abs( bestPrice - tracePrice ) * 100 / bestPrice;
-            return ( percImp );
-        }
+        int tracePrice = state.orderBook.getSweepPrice( !isBuy, outstanding );
+        
+        double percImp = (double) Math.abs( bestPrice - tracePrice ) * 100 / bestPrice;
+        return ( percImp );
     }
 
     public double getOrderBookImb ( int depth, int size, boolean isBuy ) {
@@ -423,48 +404,24 @@ public class Microtrading {
         
         // else (bestBid != 0 and bestAsk != 0):
 
-        int totalBid = 0, totalAsk = 0;        
-        int levelCount = 0, levelPrice = 0;
-
-        Iterator<Order> bidIterator = state.orderBook.bid.iterator();
-
-        while ( bidIterator.hasNext() ) {
-
-            Order b = bidIterator.next();
-            
-            if ( b.limitPrice != levelPrice ) {
-                
-                levelCount++;
-                if ( levelCount > depth ) {
+        long totalBid = 0, totalAsk = 0;
 
-                    break;
-                }
-                
-                levelPrice = b.limitPrice;
-            }
+        DepthView bidView = state.orderBook.getDepthView( true );
+        DepthView askView = state.orderBook.getDepthView( false );
+        
+        if ( depth > bidView.maxLevels ) {
             
-            totalBid += b.outstanding;
+            throw new MyException("Microtrading.getOrderBookImb - obiLevels exceeds the order book depth view");
         }
-
-        Iterator<Order> askIterator = state.orderBook.ask.iterator();
-        levelCount = levelPrice = 0;
         
-        while ( askIterator.hasNext() ) {
-
-            Order a = askIterator.next();
+        for ( int i = 0; i < depth && i < bidView.levels; i++ ) {
             
-            if ( a.limitPrice != levelPrice ) {
-                
-                levelCount++;
-                if ( levelCount > depth ) {
+            totalBid += bidView.size[i];
+        }
 
-                    break;
-                }
-                
-                levelPrice = a.limitPrice;
-            }
+        for ( int i = 0; i < depth && i < askView.levels; i++ ) {
             
-            totalAsk += a.outstanding;
+            totalAsk += askView.size[i];
         }
 /*
         if ( isBuy ) {
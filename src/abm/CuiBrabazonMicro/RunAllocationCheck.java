@@ -0,0 +1,173 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abm.CuiBrabazonMicro;
+
+import abm.CuiBrabazon.CuiTrader;
+import abmlob.events.*;
+import abmlob.orderbook.*;
+import ccloop.Consts;
+import ccloop.MarketState;
+import ccloop.TimeStamp;
+import java.lang.management.ManagementFactory;
+
+public class RunAllocationCheck {   // fails if the matching engine allocates in steady state with MatchingEngine.marketData set
+    
+    // a scripted cycle on the price level book ( Consts.BOOKTYPE 1 ): resting, crossing and partially filled limit orders,
+    // an amend down, a re-price, cancels and a market order walking two levels, in the default, SWEEP and LEVELPRINTS 
+    // modes; the thread's allocation counter ( com.sun.management.ThreadMXBean ) must not move once warmed up
+    
+    private static long trades = 0;
+    private static long quotes = 0;
+    
+    public static void main(String[] args) {
+        
+        Consts.TIMETICKSPERDAY = 34200000;
+        Consts.PRICEDIGITS = 2;
+        Consts.BOOKTYPE = 1;
+        
+        Consts.DEBUGMODE = false;
+        Consts.DEBUGSUMMARY = false;
+        Consts.DEBUGDISK = false;
+        
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        
+        if ( !mx.isThreadAllocatedMemorySupported() ) {
+            
+            System.out.println("RunAllocationCheck: thread allocation counters are not supported by this JVM");
+            System.exit(2);
+        }
+        
+        mx.setThreadAllocatedMemoryEnabled( true );
+        
+        long tid = Thread.currentThread().getId();
+        int cycles = 100000;
+        boolean failed = false;
+        
+        String[] names = { "default", "SWEEP", "SWEEP + LEVELPRINTS" };
+        
+        for ( int mode = 0; mode < names.length; mode++ ) {
+            
+            Cycle c = new Cycle( mode >= 1, mode == 2 );
+            
+            for ( int i = 0; i < 3 * cycles; i++ ) {    // warm up: JIT, and the reused arrays reach their size
+                
+                c.run();
+            }
+            
+            long tradesBefore = trades;
+            long b0 = mx.getThreadAllocatedBytes( tid );
+            
+            for ( int i = 0; i < cycles; i++ ) {
+                
+                c.run();
+            }
+            
+            long bytes = mx.getThreadAllocatedBytes( tid ) - b0;
+            
+            System.out.println( names[mode] + ": " + bytes + " bytes allocated over " + cycles + " cycles ( " + ( trades - tradesBefore ) + " trades )" );
+            
+            failed |= bytes > 0;
+        }
+        
+        System.out.println( failed ? "FAILED" : "OK" );
+        
+        if ( failed ) {
+            
+            System.exit(1);
+        }
+    }
+    
+    private static class Cycle {
+        
+        MarketState state = new MarketState( 1 );
+        MatchingEngine engine = state.matchingEngine;
+        
+        CuiTrader seller = new CuiTrader( state, 10, 1, 1000000000, 1000000000, false );
+        CuiTrader buyer = new CuiTrader( state, 10, 1, 1000000000, 1000000000, true );
+        
+        TimeStamp now = new TimeStamp( 0, 1 );
+        
+        EvtSendNewOrder send;
+        EvtRemoveOrder cancel = new EvtRemoveOrder( state.eventQueue, now, 0, 0 );
+        EvtModifyOrder modify = new EvtModifyOrder( state.eventQueue, now, 0, 0, 0, 0 );
+        
+        Cycle( boolean sweep, boolean levelPrints ) {
+            
+            state.clock.updateTime( now );
+            
+            engine.SWEEP = sweep;
+            engine.LEVELPRINTS = levelPrints;
+            
+            engine.marketData = new MarketDataListener() {
+                
+                @Override
+                public void onTrade( Trade t ) { trades += t.getNoOfFills(); }
+                
+                @Override
+                public void onQuote( Quote q ) { quotes++; }
+            };
+            
+            send = new EvtSendNewOrder( state.eventQueue, now, order( true, true, 100, 9000 ) );    // a bid and an ask far away,
+            engine.dispatch( send );                                                                // so that no side runs empty
+            
+            send.order = order( false, true, 1000000, 20000 );
+            engine.dispatch( send );
+        }
+        
+        void run() {    // leaves the book as it found it
+            
+            Order a = place( false, true, 10, 10000 );
+            place( false, true, 10, 10000 );
+            Order b = place( false, true, 10, 10010 );
+            Order c = place( false, true, 10, 10020 );
+            
+            modify( a, 10000, 8 );      // amend down, keeps its priority
+            modify( b, 10005, 10 );     // re-price
+            cancel( c );
+            
+            place( true, false, 28, 0 );    // walks 10000 and 10005
+            
+            place( false, true, 10, 10000 );
+            Order d = place( true, true, 15, 10000 );   // crosses, the rest rests
+            cancel( d );
+        }
+        
+        private Order place( boolean isBuy, boolean isLimit, int size, int price ) {
+            
+            send.order = order( isBuy, isLimit, size, price );
+            engine.dispatch( send );
+            
+            return send.order;
+        }
+        
+        private void modify( Order o, int newLimitPrice, int newOutstanding ) {
+            
+            modify.orderId = o.getId();
+            modify.newLimitPrice = newLimitPrice;
+            modify.newOutstanding = newOutstanding;
+            engine.dispatch( modify );
+        }
+        
+        private void cancel( Order o ) {
+            
+            cancel.orderId = o.getId();
+            engine.dispatch( cancel );
+        }
+        
+        private Order order( boolean isBuy, boolean isLimit, int size, int price ) {
+            
+            return state.orderPool.acquire( state.orderBook, isBuy ? buyer : seller, isBuy, isLimit, size, price, null );
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abm.CuiBrabazonMicro;
+
+import abm.CuiBrabazon.CuiABModel;
+import abmlob.events.*;
+import ccloop.Consts;
+import ccloop.MyException;
+import ccloop.TimeStamp;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RunQueueBenchmark {    // event queue implementations ( Consts.QUEUETYPE ) on the Cui and CuiMicro runs, plus a synthetic hold loop
+    
+    public static void main(String[] args) {
+        
+        Consts.TIMETICKSPERDAY = 34200000;
+        Consts.BOOKTYPE = 1;
+        
+        Consts.DEBUGMODE = false;
+        Consts.DEBUGSUMMARY = false;
+        Consts.DEBUGDISK = false;
+        
+        String[] names = { "TreeSet", "4-ary heap", "timing wheel" };
+        long randSeed = 6548412;
+        int warmUp = 2;
+        int runs = 5;
+        
+        for ( int queueType = 0; queueType < names.length; queueType++ ) {
+            
+            Consts.QUEUETYPE = queueType;
+            
+            for ( int i = 0; i < warmUp; i++ ) {
+                
+                runCui( randSeed );
+                runMicro( randSeed );
+            }
+            
+            long[] cui = new long[runs];
+            long[] micro = new long[runs];
+            long cuiEvents = 0;
+            long microEvents = 0;
+            
+            for ( int i = 0; i < runs; i++ ) {
+                
+                long t0 = System.nanoTime();
+                cuiEvents = runCui( randSeed );
+                long t1 = System.nanoTime();
+                microEvents = runMicro( randSeed );
+                long t2 = System.nanoTime();
+                
+                cui[i] = t1 - t0;
+                micro[i] = t2 - t1;
+            }
+            
+            System.out.println( names[queueType] + ": Cui " + report( cui, cuiEvents ) + ", CuiMicro " + report( micro, microEvents ) );
+        }
+        
+        //----- hold model: pop the next event, reschedule it at a latency-like offset
+        
+        for ( int queueType = 0; queueType < names.length; queueType++ ) {
+            
+            for ( int pending = 1000; pending <= 100000; pending *= 10 ) {
+                
+                long[] hold = new long[runs];
+                
+                for ( int i = 0; i < runs; i++ ) {
+                    
+                    hold[i] = hold( queueType, pending, 2000000, randSeed );
+                }
+                
+                System.out.println( names[queueType] + ": hold " + pending + " pending " + report( hold, 2000000 ) );
+            }
+        }
+    }
+    
+    private static long runCui( long randSeed ) {
+        
+        CuiABModel abm = new CuiABModel( null, randSeed );
+        abm.run();
+        
+        return abm.state.eventQueue.noOfEvents;
+    }
+    
+    private static long runMicro( long randSeed ) {
+        
+        CuiMicroABModel abm = new CuiMicroABModel( new ParamSet(), randSeed );
+        abm.run();
+        
+        return abm.state.eventQueue.noOfEvents;
+    }
+    
+    private static long hold( int queueType, int pending, int operations, long randSeed ) {
+        
+        EventQueue queue = new EventQueue( queueType );
+        EventSet set = queue.queue;
+        Random rng = new Random( randSeed );
+        
+        for ( int i = 0; i < pending; i++ ) {
+            
+            set.add( new EvtAgentWakeUp( queue, new TimeStamp( 0, offset( rng ) ), null ) );
+        }
+        
+        long t0 = System.nanoTime();
+        
+        for ( int i = 0; i < operations; i++ ) {
+            
+            Event evt = set.pollFirst();
+            
+            long t = evt.eventTime.timeTick + (long)offset( rng );
+            int day = evt.eventTime.day + (int)( t / ( Consts.TIMETICKSPERDAY + 1L ) );
+            
+            evt.eventTime = new TimeStamp( day, (int)( t % ( Consts.TIMETICKSPERDAY + 1L ) ) );
+            
+            if ( !set.add( evt ) ) {
+                
+                throw new MyException("RunQueueBenchmark.hold: could not reschedule " + evt);
+            }
+        }
+        
+        return System.nanoTime() - t0;
+    }
+    
+    private static int offset( Random rng ) {  // mostly short latencies and polling gaps, some expirations
+        
+        switch ( rng.nextInt(4) ) {
+            
+            case 0:     return rng.nextInt(10);
+            case 1:     return rng.nextInt(1000);
+            case 2:     return rng.nextInt(30000);
+            default:    return 300000;
+        }
+    }
+    
+    private static String report( long[] nanos, long events ) {    // median over the runs
+        
+        long[] sorted = nanos.clone();
+        Arrays.sort( sorted );
+        
+        long median = sorted[ sorted.length / 2 ];
+        
+        return ( median / 1000000 ) + " ms ( " + ( events * 1000000000L / median / 1000 ) + "k events/s )";
+    }
+}
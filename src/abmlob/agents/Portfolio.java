@@ -15,18 +15,17 @@ package abmlob.agents;
 
 import abmlob.orderbook.*;
 import ccloop.Consts;
-import java.util.TreeSet;
 
 public class Portfolio {
     
-    public int cash;
-    public int blockedCash;
+    public long cash;   // Consts.CASHDIGITS decimals
+    public long blockedCash;
     
     public int inventory;
     public int blockedInventory;
 
-    public TreeSet<Order> buyOrders;
-    public TreeSet<Order> sellOrders;
+    public OrderTimeSet buyOrders;     // oldest last
+    public OrderTimeSet sellOrders;
     
     public Portfolio (int cash, int inventory) {
         
@@ -36,10 +35,8 @@ public class Portfolio {
         this.inventory = inventory;
         this.blockedInventory = 0;
 
-        OrderCompByOrderTime comp = new OrderCompByOrderTime();
-        
-        this.buyOrders = new TreeSet<>(comp);
-        this.sellOrders = new TreeSet<>(comp);
+        this.buyOrders = new OrderTimeSet();
+        this.sellOrders = new OrderTimeSet();
     }
     
     @Override
@@ -14,6 +14,7 @@
 package abmlob.agents;
 
 import abmlob.events.Event;
+import abmlob.events.EvtSendOrderBatch;
 import ccloop.MarketState;
 import ccloop.MyException;
 import ccloop.RandNumGen;
@@ -46,6 +47,29 @@ public abstract class Trader extends Agent {
     public abstract Event nextWakeUp( ccloop.MarketState state, RandNumGen rng );
     public abstract Event trade( ccloop.MarketState state, RandNumGen rng );
     
+    public EvtSendOrderBatch newOrderBatch( MarketState state, int priority ) {  // reaches the market after latency, like a single order
+        
+        return newOrderBatch( state, 0, priority );
+    }
+    
+    public EvtSendOrderBatch newOrderBatch( MarketState state, int instrument, int priority ) {
+        
+        return new EvtSendOrderBatch( state.eventQueue, state.clock.addTime( state.clock.getCurTime(), latency ), instrument, priority );
+    }
+    
+    public void submitOrderBatch( EvtSendOrderBatch batch, MarketState state ) {    // one queue operation for the whole batch
+        
+        if ( batch.isEmpty() ) {
+            
+            return;
+        }
+        
+        if ( !state.eventQueue.queue.add( batch ) ) {
+            
+            throw new MyException("Trader.submitOrderBatch: could not add EvtSendOrderBatch to state.eventQueue.queue");
+        }
+    }
+    
     @Override
     public String toString() {
 
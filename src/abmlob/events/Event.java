@@ -13,6 +13,7 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.MatchingEngine;
 import ccloop.MyException;
 import ccloop.TimeStamp;
 
@@ -22,6 +23,12 @@ public abstract class Event {
     
     public TimeStamp eventTime;
     public int priority = 5;    // default
+    public int instrument = 0;  // order book the event belongs to, see MarketState.addInstrument
+    
+    int heapSlot = -1;  // position inside a HeapEventSet, -1 when not queued there
+    boolean queued = false; // inside a TombstoneEventSet, dead or alive
+    boolean dead = false;   // cancelled, dropped when it reaches the head ( see TombstoneEventSet )
+    boolean owned = false;  // kept by its owner after EventQueue.schedule: retracted through it, not indexed by order id
     
     public Event( EventQueue queue ) {
 
@@ -34,10 +41,18 @@ public abstract class Event {
         id = queue.noOfEvents;
     }
     
+    public boolean isCancelled() { return dead; }
+    
+    public boolean isPending() { return queued && !dead; }
+    
     public Class<? extends Event> getType() {
 
         return getClass();
     }
+    
+    public abstract int typeId();   // the TYPE constant of the event class, see EventTypes.register
+    
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {}  // order flow events call back into the engine
 
     @Override
     public int hashCode() {
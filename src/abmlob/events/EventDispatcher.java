@@ -15,6 +15,7 @@ package abmlob.events;
 
 import ccloop.MarketState;
 import ccloop.MyException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,21 +23,35 @@ public class EventDispatcher {
     
     public Map<Class<? extends Event>, Handler> handlers;
     
+    private Handler[] table;    // indexed by Event.typeId()
+    
     public EventDispatcher() {
         
         handlers = new HashMap<>();
+        table = new Handler[16];
     }
 
     public void registerChannel(Class<? extends Event> contentType, Handler channel) {
         
         handlers.put(contentType, channel);
+        
+        int type = EventTypes.register( contentType );
+        
+        if ( type >= table.length ) {
+            
+            table = Arrays.copyOf( table, Math.max( type + 1, table.length << 1 ) );
+        }
+        
+        table[type] = channel;
     }
 
     // the handle which is linked to the type of event is activated
 
     public void dispatch(Event content, MarketState state) {
         
-        Handler h = handlers.get(content.getClass());
+        int type = content.typeId();
+        
+        Handler h = ( type < table.length ) ? table[type] : null;
         
         if ( h == null ) {
         
@@ -14,65 +14,127 @@
 package abmlob.events;
 
 import abmlob.orderbook.Order;
+import ccloop.Consts;
 import ccloop.MyException;
-import java.util.IdentityHashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class EventQueue {
 
     public long noOfEvents;
-    public TreeSet<Event> queue;   // event multiplexing
+    public EventSet queue;   // event multiplexing
+    
+    private TombstoneEventSet pending;     // regular events: tombstones over the order index over the queue implementation
+    private OrderIndexedEventSet index;
+    
+    private TombstoneEventSet expiring;    // EvtOrderExpiration only, in a timing wheel of its own
+    private OrderIndexedEventSet expiryIndex;
     
     public EventQueue () {
 
-        EventCompByTimePriority comp = new EventCompByTimePriority();
+        this( Consts.QUEUETYPE );
+    }
+    
+    public EventQueue ( int queueType ) {
         
         this.noOfEvents = 0;
-        this.queue = new TreeSet<>(comp);
+        this.index = new OrderIndexedEventSet( newEventSet( queueType ) );
+        this.pending = new TombstoneEventSet( index );
+        this.expiryIndex = new OrderIndexedEventSet( new TimingWheelEventSet() );
+        this.expiring = new TombstoneEventSet( expiryIndex );
+        this.queue = new ExpiryWheelEventSet( pending, expiring );
     }
     
-    public void removeEventAssociatedWith ( Order o, Event source ) {
+    private static EventSet newEventSet( int queueType ) {
         
-        Map<Event, Object> toBeRemoved = new IdentityHashMap<Event, Object>();
+        switch ( queueType ) {
+            
+            case 0:
+                
+                return new TreeSetEventSet();
+                
+            case 1:
+                
+                return new HeapEventSet();
+                
+            case 2:
+                
+                return new TimingWheelEventSet();
+                
+            default:
+                
+                throw new MyException("EventQueue: unknown queue type " + queueType);
+        }
+    }
+    
+    private TombstoneEventSet setOf( Event evt ) {
         
-        Iterator<Event> itr = queue.iterator();
+        return ExpiryWheelEventSet.isExpiry( evt ) ? expiring : pending;
+    }
+    
+    public <E extends Event> E schedule ( E evt ) {    // returns evt, which the caller keeps to retract it through cancel(), e.g. Order.expiration
         
-        while( itr.hasNext() ){
+        if ( !evt.queued ) {
             
-            Event evt = itr.next();
+            evt.owned = true;   // a revived tombstone keeps its order index entry
+        }
+        
+        if ( !setOf( evt ).add( evt ) ) {
             
-            if (! evt.equals(source) ) { // only different (future?) events
+            throw new MyException("EventQueue.schedule: event already pending " + evt);
+        }
+        
+        return evt;
+    }
+    
+    public boolean cancel ( Event evt ) {  // O( 1 ) tombstone, the event is dropped when it reaches the head
+        
+        return setOf( evt ).cancel( evt );
+    }
+    
+    public int noOfPendingExpirations() { return expiring.size(); }
+    
+    public void removeEventAssociatedWith ( Order o, Event source ) {  // cancels pending EvtRemoveOrder / EvtOrderExpiration of o, other than source
+        
+        o.expiration = retract( o.expiration, source );     // kept by the order, O( 1 )
+        o.cancelRequest = retract( o.cancelRequest, source );
+        
+        cancelAttached( index.attached( o.getId() ), pending, o, source );  // queued without one, looked up by order id
+        cancelAttached( expiryIndex.attached( o.getId() ), expiring, o, source );
+    }
+    
+    private Event retract ( Event evt, Event source ) {
+        
+        if ( evt != null && !evt.equals( source ) ) {
             
-                if ( evt.getClass() == EvtRemoveOrder.class ) {
-
-                    if ( ((EvtRemoveOrder)evt).order.getId() == o.getId() ) {
-
-                        toBeRemoved.put(evt, null);
-                    }
-                }
-
-                if ( evt.getClass() == EvtOrderExpiration.class ) {
-
-                    if ( ((EvtOrderExpiration)evt).order.getId() == o.getId() ) {
-
-                        toBeRemoved.put(evt, null);
-                    }
-                }
+            cancel( evt );
+        }
+        
+        return null;
+    }
+    
+    private static void cancelAttached ( List<Event> attached, TombstoneEventSet set, Order o, Event source ) {
+        
+        if ( attached != null ) {
+            
+            for ( int i = 0; i < attached.size(); i++ ) {
                 
-                // or others
+                Event evt = attached.get(i);
+                
+                if ( evt.instrument == o.getInstrument() && !evt.equals( source ) ) {
+                    
+                    set.cancel( evt );
+                }
             }
         }
+    }
+    
+    public void removeEventsAssociatedWith ( List<Order> orders, Event source ) {
         
-        if ( !toBeRemoved.isEmpty() ) {
+        for ( int i = 0; i < orders.size(); i++ ) {
             
-            if ( !queue.removeAll(toBeRemoved.keySet()) ) {
-
-                throw new MyException("EventQueue.removeEventAssociatedWith - could not remove from event queue");
-            }
-
-            toBeRemoved.clear();    // ??? precaution needed / local variable
+            removeEventAssociatedWith( orders.get(i), source );
         }
     }
     
@@ -84,8 +146,17 @@ public class EventQueue {
 
         buf.append("EventQueue (").append(queue.size()).append(" events)\n");
         
+        ArrayList<Event> sorted = new ArrayList<>( queue.size() );  // heap implementations iterate in array order
+        
         for (Event ev : queue) {
             
+            sorted.add(ev);
+        }
+        
+        Collections.sort( sorted, new EventCompByTimePriority() );
+        
+        for (Event ev : sorted) {
+            
             buf.append(i).append(".").append(ev).append("\n");
             i++;
         }
@@ -0,0 +1,42 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class EventTypes {     // small integer ids for event classes, assigned at registration
+    
+    private static final Map<Class<? extends Event>, Integer> ids = new HashMap<>();
+    
+    private EventTypes() {}
+    
+    public static synchronized int register( Class<? extends Event> type ) {   // idempotent
+        
+        Integer id = ids.get( type );
+        
+        if ( id == null ) {
+            
+            id = ids.size();
+            ids.put( type, id );
+        }
+        
+        return id;
+    }
+    
+    public static synchronized int count() {
+        
+        return ids.size();
+    }
+}
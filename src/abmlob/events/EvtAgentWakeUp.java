@@ -18,6 +18,8 @@ import ccloop.TimeStamp;
 
 public class EvtAgentWakeUp extends Event {
     
+    public static final int TYPE = EventTypes.register( EvtAgentWakeUp.class );
+    
     public Agent agent;
     
     public EvtAgentWakeUp( EventQueue queue, TimeStamp eventTime, Agent agent ) {
@@ -27,4 +29,7 @@ public class EvtAgentWakeUp extends Event {
         this.eventTime = eventTime;
         this.agent = agent;
     }
+    
+    @Override
+    public int typeId() { return TYPE; }
 }
@@ -0,0 +1,50 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import abmlob.orderbook.MatchingEngine;
+import ccloop.TimeStamp;
+
+public class EvtAuction extends Event {     // uncrosses the orders collected since the previous auction, see MatchingEngine.AUCTION
+
+    public static final int TYPE = EventTypes.register( EvtAuction.class );
+    
+    public EvtAuction( EventQueue queue, TimeStamp eventTime, int instrument ) {
+        
+        super( queue );
+        
+        this.eventTime = eventTime;
+        this.instrument = instrument;
+        this.priority = 1;  // after the orders arriving at the same tick
+    }
+    
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+        
+        buf.append(eventTime).append("-I#").append( instrument ).append("-").append(getType());
+        
+        return(buf.toString());
+    }
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {
+        
+        engine.runAuction( operTime, this );   // returns the clearing price
+    }
+}
@@ -17,6 +17,8 @@ import ccloop.TimeStamp;
 
 public class EvtEmptyBook extends Event {
     
+    public static final int TYPE = EventTypes.register( EvtEmptyBook.class );
+    
     public boolean bidSide;
     
     public EvtEmptyBook( EventQueue queue, TimeStamp n, boolean bidSide ) {
@@ -29,10 +31,19 @@ public class EvtEmptyBook extends Event {
 
     public EvtEmptyBook( EventQueue queue, TimeStamp n, int priority, boolean bidSide ) {
 
+        this( queue, n, 0, priority, bidSide );
+    }
+    
+    public EvtEmptyBook( EventQueue queue, TimeStamp n, int instrument, int priority, boolean bidSide ) {
+
         super( queue );
         
         this.eventTime = n;
+        this.instrument = instrument;
         this.priority = priority;
         this.bidSide = bidSide;
     }
+    
+    @Override
+    public int typeId() { return TYPE; }
 }
@@ -17,10 +17,15 @@ import ccloop.TimeStamp;
 
 public class EvtFundValueChange extends Event {
  
+    public static final int TYPE = EventTypes.register( EvtFundValueChange.class );
+    
     public EvtFundValueChange( EventQueue queue, TimeStamp n ) {
 
         super( queue );
         
         this.eventTime = n;
     }
-}
\ No newline at end of file
+    
+    @Override
+    public int typeId() { return TYPE; }
+}
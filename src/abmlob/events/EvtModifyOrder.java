@@ -13,12 +13,16 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.MatchingEngine;
 import abmlob.orderbook.Order;
 import ccloop.TimeStamp;
 
 public class EvtModifyOrder extends Event {
 
-    public Order order;
+    public static final int TYPE = EventTypes.register( EvtModifyOrder.class );
+    
+    public Order order;     // null if the order is referenced only by id
+    public long orderId;
     public int newLimitPrice;
     public int newOutstanding;
         
@@ -28,6 +32,25 @@ public class EvtModifyOrder extends Event {
         
         this.eventTime = eventTime;
         this.order = orderToBeModified;
+        this.orderId = orderToBeModified.getId();
+        this.instrument = orderToBeModified.getInstrument();
+        this.newOutstanding = newOutstanding;
+        this.newLimitPrice = newLimitPrice;
+    }
+    
+    public EvtModifyOrder( EventQueue queue, TimeStamp eventTime, long orderId, int newLimitPrice, int newOutstanding ) {
+
+        this( queue, eventTime, 0, orderId, newLimitPrice, newOutstanding );
+    }
+    
+    public EvtModifyOrder( EventQueue queue, TimeStamp eventTime, int instrument, long orderId, int newLimitPrice, int newOutstanding ) {
+
+        super( queue );
+        
+        this.eventTime = eventTime;
+        this.order = null;
+        this.orderId = orderId;
+        this.instrument = instrument;
         this.newOutstanding = newOutstanding;
         this.newLimitPrice = newLimitPrice;
     }
@@ -37,8 +60,24 @@ public class EvtModifyOrder extends Event {
 
         StringBuffer buf = new StringBuffer();
         
-        buf.append(eventTime).append("-#").append( order.agent.id ).append("-").append(getType());
+        if ( order != null ) {
+            
+            buf.append(eventTime).append("-#").append( order.agent.id ).append("-").append(getType());
+        }
+        else {
+            
+            buf.append(eventTime).append("-O#").append( orderId ).append("-").append(getType());
+        }
         
         return(buf.toString());
     }
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {
+        
+        engine.modifyOrder( orderId, operTime, newLimitPrice, newOutstanding, this );    // returns tracePrice
+    }
 }
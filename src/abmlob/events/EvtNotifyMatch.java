@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import abmlob.orderbook.Quote;
+import abmlob.orderbook.Trade;
+import ccloop.TimeStamp;
+import java.util.ArrayList;
+
+public class EvtNotifyMatch extends Event {     // all fills and the final quote of one matching engine event
+
+    public static final int TYPE = EventTypes.register( EvtNotifyMatch.class );
+    
+    public ArrayList<Trade> trades;     // in execution order, may be empty
+    public Quote quote;     // null if the top of book did not change
+    
+    public EvtNotifyMatch( EventQueue queue, TimeStamp eventTime, int instrument, ArrayList<Trade> trades, Quote quote ) {
+        
+        super( queue );
+
+        this.eventTime = eventTime;
+        this.instrument = instrument;
+        this.trades = trades;
+        this.quote = quote;
+        this.priority = 8;  // higher priority
+    }
+
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+        
+        buf.append(eventTime).append("-").append( trades.size() ).append(" trades").append( quote != null ? "+quote" : "" ).append("-").append(getType());
+        
+        return( buf.toString() );
+    }
+    
+    @Override
+    public int typeId() { return TYPE; }
+}
@@ -18,6 +18,8 @@ import ccloop.TimeStamp;
 
 public class EvtNotifyQuoteChange extends Event {
     
+    public static final int TYPE = EventTypes.register( EvtNotifyQuoteChange.class );
+    
     public Quote quote;
     
     public EvtNotifyQuoteChange( EventQueue queue, TimeStamp eventTime, Quote quote ) {
@@ -26,6 +28,7 @@ public class EvtNotifyQuoteChange extends Event {
         
         this.eventTime = eventTime;
         this.quote = quote;
+        this.instrument = quote.getInstrument();
         this.priority = 8;  // higher priority
     }
 
@@ -38,5 +41,7 @@ public class EvtNotifyQuoteChange extends Event {
         
         return( buf.toString() );
     }
-
+    
+    @Override
+    public int typeId() { return TYPE; }
 }
@@ -18,6 +18,8 @@ import ccloop.TimeStamp;
 
 public class EvtNotifyTrade extends Event {
 
+    public static final int TYPE = EventTypes.register( EvtNotifyTrade.class );
+    
     public Trade trade;
     
     public EvtNotifyTrade( EventQueue queue, TimeStamp eventTime, Trade trade ) {
@@ -26,6 +28,7 @@ public class EvtNotifyTrade extends Event {
 
         this.eventTime = eventTime;
         this.trade = trade;
+        this.instrument = trade.getInstrument();
         this.priority = 8;  // higher priority
     }
 
@@ -38,5 +41,7 @@ public class EvtNotifyTrade extends Event {
         
         return( buf.toString() );
     }
-
+    
+    @Override
+    public int typeId() { return TYPE; }
 }
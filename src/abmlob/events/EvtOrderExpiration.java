@@ -13,12 +13,16 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.MatchingEngine;
 import abmlob.orderbook.Order;
 import ccloop.TimeStamp;
 
 public class EvtOrderExpiration extends Event {
 
+    public static final int TYPE = EventTypes.register( EvtOrderExpiration.class );
+    
     public Order order;
+    public long orderId;    // taken at scheduling, see OrderIndexedEventSet
     
     public EvtOrderExpiration( EventQueue queue, TimeStamp eventTime, Order orderToBeRemoved ) {
         
@@ -26,6 +30,8 @@ public class EvtOrderExpiration extends Event {
         
         this.eventTime = eventTime;
         this.order = orderToBeRemoved;
+        this.orderId = orderToBeRemoved.getId();
+        this.instrument = orderToBeRemoved.getInstrument();
         this.priority = 10; // maximum priority
     }
     
@@ -38,5 +44,13 @@ public class EvtOrderExpiration extends Event {
         
         return(buf.toString());
     }
-
-}
\ No newline at end of file
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {
+        
+        engine.removeOrder( order, 6, operTime, this );    // expiration
+    }
+}
@@ -17,10 +17,15 @@ import ccloop.TimeStamp;
 
 public class EvtRandomPolling extends Event {
  
+    public static final int TYPE = EventTypes.register( EvtRandomPolling.class );
+    
     public EvtRandomPolling( EventQueue queue, TimeStamp n ) {
 
         super( queue );
         
         this.eventTime = n;
     }
+    
+    @Override
+    public int typeId() { return TYPE; }
 }
@@ -13,12 +13,16 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.MatchingEngine;
 import abmlob.orderbook.Order;
 import ccloop.TimeStamp;
 
 public class EvtRemoveOrder extends Event {
 
-    public Order order;
+    public static final int TYPE = EventTypes.register( EvtRemoveOrder.class );
+    
+    public Order order;     // null if the order is referenced only by id
+    public long orderId;
     
     public EvtRemoveOrder( EventQueue queue, TimeStamp eventTime, Order orderToBeRemoved ) {
         
@@ -26,6 +30,23 @@ public class EvtRemoveOrder extends Event {
         
         this.eventTime = eventTime;
         this.order = orderToBeRemoved;
+        this.orderId = orderToBeRemoved.getId();
+        this.instrument = orderToBeRemoved.getInstrument();
+    }
+    
+    public EvtRemoveOrder( EventQueue queue, TimeStamp eventTime, long orderId ) {
+        
+        this( queue, eventTime, 0, orderId );
+    }
+    
+    public EvtRemoveOrder( EventQueue queue, TimeStamp eventTime, int instrument, long orderId ) {
+        
+        super( queue );
+        
+        this.eventTime = eventTime;
+        this.order = null;
+        this.orderId = orderId;
+        this.instrument = instrument;
     }
     
     @Override
@@ -33,9 +54,24 @@ public class EvtRemoveOrder extends Event {
 
         StringBuffer buf = new StringBuffer();
         
-        buf.append(eventTime).append("-#").append( order.agent.id ).append("-").append(getType());
+        if ( order != null ) {
+            
+            buf.append(eventTime).append("-#").append( order.agent.id ).append("-").append(getType());
+        }
+        else {
+            
+            buf.append(eventTime).append("-O#").append( orderId ).append("-").append(getType());
+        }
         
         return(buf.toString());
     }
-
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {
+        
+        engine.removeOrder( orderId, 5, operTime, this );  // cancel
+    }
 }
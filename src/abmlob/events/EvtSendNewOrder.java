@@ -13,11 +13,14 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.MatchingEngine;
 import abmlob.orderbook.Order;
 import ccloop.TimeStamp;
 
 public class EvtSendNewOrder extends Event {
 
+    public static final int TYPE = EventTypes.register( EvtSendNewOrder.class );
+    
     public Order order;
     
     public EvtSendNewOrder( EventQueue queue, TimeStamp eventTime, Order orderToBeSent ) {
@@ -26,6 +29,7 @@ public class EvtSendNewOrder extends Event {
         
         this.eventTime = eventTime;
         this.order = orderToBeSent;
+        this.instrument = orderToBeSent.getInstrument();
     }
     
     public EvtSendNewOrder( EventQueue queue, TimeStamp eventTime, Order orderToBeSent, int priority ) {
@@ -34,6 +38,7 @@ public class EvtSendNewOrder extends Event {
         
         this.eventTime = eventTime;
         this.order = orderToBeSent;
+        this.instrument = orderToBeSent.getInstrument();
         this.priority = priority;
     }
     
@@ -46,5 +51,13 @@ public class EvtSendNewOrder extends Event {
         
         return(buf.toString());
     }
-
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {
+        
+        engine.sendNewOrder( order, operTime, this );
+    }
 }
@@ -0,0 +1,146 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import abmlob.orderbook.MatchingEngine;
+import abmlob.orderbook.Order;
+import ccloop.MyException;
+import ccloop.TimeStamp;
+import java.util.ArrayList;
+
+public class EvtSendOrderBatch extends Event {  // new orders, cancels and modifies applied as one engine transaction
+
+    public static final int TYPE = EventTypes.register( EvtSendOrderBatch.class );
+    
+    public static final int NEW = 0;
+    public static final int CANCEL = 1;
+    public static final int MODIFY = 2;
+    
+    public static class Leg {
+        
+        public int op;
+        public Order order;     // NEW only
+        public long orderId;    // CANCEL and MODIFY
+        public int newLimitPrice;
+        public int newOutstanding;
+    }
+    
+    public ArrayList<Leg> legs = new ArrayList<>();     // applied in submission order, all on one instrument
+    
+    public EvtSendOrderBatch( EventQueue queue, TimeStamp eventTime, int priority ) {
+
+        this( queue, eventTime, 0, priority );
+    }
+    
+    public EvtSendOrderBatch( EventQueue queue, TimeStamp eventTime, int instrument, int priority ) {
+
+        super( queue );
+        
+        this.eventTime = eventTime;
+        this.instrument = instrument;
+        this.priority = priority;
+    }
+    
+    public void addNewOrder( Order o ) {
+        
+        if ( o.getInstrument() != instrument ) {
+            
+            throw new MyException("EvtSendOrderBatch.addNewOrder: order #" + o.getId() + " belongs to another instrument");
+        }
+        
+        Leg l = new Leg();
+        l.op = NEW;
+        l.order = o;
+        l.orderId = o.getId();
+        legs.add(l);
+    }
+    
+    public void addCancel( long orderId ) {
+        
+        Leg l = new Leg();
+        l.op = CANCEL;
+        l.orderId = orderId;
+        legs.add(l);
+    }
+    
+    public void addModify( long orderId, int newLimitPrice, int newOutstanding ) {
+        
+        Leg l = new Leg();
+        l.op = MODIFY;
+        l.orderId = orderId;
+        l.newLimitPrice = newLimitPrice;
+        l.newOutstanding = newOutstanding;
+        legs.add(l);
+    }
+    
+    public boolean isEmpty() {
+        
+        return legs.isEmpty();
+    }
+    
+    public boolean hasCancels() {   // only a cancel can empty a book side without a trade notification
+        
+        for ( int i = 0; i < legs.size(); i++ ) {
+            
+            if ( legs.get(i).op == CANCEL ) {
+                
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+        
+        buf.append(eventTime).append("-").append( legs.size() ).append(" legs-").append(getType());
+        
+        return(buf.toString());
+    }
+    
+    @Override
+    public int typeId() { return TYPE; }
+    
+    @Override
+    public void accept( MatchingEngine engine, TimeStamp operTime ) {     // the whole batch runs inside a single dispatch
+        
+        for ( int i = 0; i < legs.size(); i++ ) {
+            
+            accept( engine, operTime, i );
+        }
+    }
+    
+    public void accept( MatchingEngine engine, TimeStamp operTime, int leg ) {  // a single leg, for engines that look at the book between legs
+        
+        Leg l = legs.get( leg );
+        
+        switch ( l.op ) {
+            
+            case NEW:
+                engine.sendNewOrder( l.order, operTime, this );
+                break;
+                
+            case CANCEL:
+                engine.removeOrder( l.orderId, 5, operTime, this );
+                break;
+                
+            case MODIFY:
+                engine.modifyOrder( l.orderId, operTime, l.newLimitPrice, l.newOutstanding, this );
+                break;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class ExpiryWheelEventSet implements EventSet {     // order expirations kept apart from the other events, merged at the head
+    
+    //----- EvtOrderExpiration ( priority 10 ) goes to its own set, usually a TimingWheelEventSet, so the
+    // per-order expiries never inflate the main queue; every expiration due by the time of the next regular
+    // event comes out first, in the order the single queue would have produced
+    
+    public EventSet events;         // everything else
+    public EventSet expirations;
+    
+    private EventCompByTimePriority comp;
+    
+    public ExpiryWheelEventSet( EventSet events, EventSet expirations ) {
+        
+        this.events = events;
+        this.expirations = expirations;
+        this.comp = new EventCompByTimePriority();
+    }
+    
+    public static boolean isExpiry( Event evt ) { return evt.typeId() == EvtOrderExpiration.TYPE; }
+    
+    private EventSet head() {  // set holding the next event, null if both are empty
+        
+        Event e = events.first();
+        Event x = expirations.first();
+        
+        if ( x == null ) {
+            
+            return e == null ? null : events;
+        }
+        
+        if ( e == null ) {
+            
+            return expirations;
+        }
+        
+        return comp.compare( x, e ) < 0 ? expirations : events;
+    }
+    
+    @Override
+    public boolean isEmpty() { return events.isEmpty() && expirations.isEmpty(); }
+    
+    @Override
+    public int size() { return events.size() + expirations.size(); }
+
+    @Override
+    public Event first() {
+        
+        EventSet h = head();
+        
+        return h == null ? null : h.first();
+    }
+    
+    @Override
+    public Event pollFirst() {
+        
+        EventSet h = head();
+        
+        return h == null ? null : h.pollFirst();
+    }
+    
+    @Override
+    public boolean add( Event evt ) {
+        
+        return isExpiry( evt ) ? expirations.add( evt ) : events.add( evt );
+    }
+    
+    @Override
+    public boolean remove( Event evt ) {
+        
+        return isExpiry( evt ) ? expirations.remove( evt ) : events.remove( evt );
+    }
+    
+    @Override
+    public Iterator<Event> iterator() {     // regular events, then expirations
+        
+        final Iterator<Event> first = events.iterator();
+        final Iterator<Event> second = expirations.iterator();
+        
+        return new Iterator<Event>() {
+            
+            private Iterator<Event> last;
+            
+            @Override
+            public boolean hasNext() { return first.hasNext() || second.hasNext(); }
+            
+            @Override
+            public Event next() {
+                
+                if ( first.hasNext() ) {
+                    
+                    last = first;
+                }
+                else if ( second.hasNext() ) {
+                    
+                    last = second;
+                }
+                else {
+                    
+                    throw new NoSuchElementException();
+                }
+                
+                return last.next();
+            }
+            
+            @Override
+            public void remove() {
+                
+                if ( last == null ) {
+                    
+                    throw new IllegalStateException();
+                }
+                
+                last.remove();
+            }
+        };
+    }
+}
@@ -13,6 +13,7 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.Quote;
 import ccloop.MarketState;
 
 public class HdlNotifyQuoteChange extends Handler {
@@ -20,9 +21,14 @@ public class HdlNotifyQuoteChange extends Handler {
     @Override
     public void broadcast( Event evt, MarketState state ) {
 
+        processQuote( ((EvtNotifyQuoteChange)evt).quote, state );
+    }
+    
+    public void processQuote( Quote q, MarketState state ) {    // also called for the quote of an EvtNotifyMatch
+
         //---- store in MarketState
         
-        state.addQuote( ((EvtNotifyQuoteChange)evt).quote );
+        state.addQuote( q );
     }
 
 }
@@ -13,6 +13,7 @@
  */
 package abmlob.events;
 
+import abmlob.orderbook.Trade;
 import ccloop.MarketState;
 
 public class HdlNotifyTrade extends Handler {
@@ -20,9 +21,14 @@ public class HdlNotifyTrade extends Handler {
     @Override
     public void broadcast( Event evt, MarketState state ) {
 
+        processTrade( ((EvtNotifyTrade)evt).trade, state );
+    }
+    
+    public void processTrade( Trade t, MarketState state ) {    // also called for each fill of an EvtNotifyMatch
+
         //---- store in MarketState
 
-        state.addTrade( ((EvtNotifyTrade)evt).trade );
+        state.addTrade( t );
     }
     
 }
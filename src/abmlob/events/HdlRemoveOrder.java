@@ -21,7 +21,7 @@ public class HdlRemoveOrder extends Handler {
     public void broadcast(Event evt, MarketState state) {
 
         // forward instruction to market
-        state.matchingEngine.dispatch(evt);
+        state.getMatchingEngine( evt.instrument ).dispatch(evt);
     }
 
 }
\ No newline at end of file
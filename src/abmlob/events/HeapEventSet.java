@@ -0,0 +1,352 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import ccloop.MyException;
+import ccloop.TimeStamp;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class HeapEventSet implements EventSet {    // implicit 4-ary min-heap, events kept next to a primitive sort key
+    
+    //----- packed key: day ( 23 bits ) | timeTick ( 31 bits ) | 255 - priority ( 8 bits ), ties broken by the event id
+    // same order as EventCompByTimePriority, without touching the TimeStamp objects while sifting
+    
+    private static final int D = 4;
+    
+    private static final int MAXDAY = ( 1 << 23 ) - 1;
+    private static final int MAXPRIORITY = 255;
+    
+    private Event[] events;
+    private long[] keys;
+    private long[] ids;
+    private int size;
+    private int modCount;
+    
+    public HeapEventSet() {
+        
+        this( 256 );
+    }
+    
+    public HeapEventSet( int initialCapacity ) {
+        
+        int n = initialCapacity > 1 ? initialCapacity : 2;
+        
+        this.events = new Event[n];
+        this.keys = new long[n];
+        this.ids = new long[n];
+        this.size = 0;
+    }
+    
+    public static long key( Event evt ) {
+        
+        TimeStamp t = evt.eventTime;
+        
+        if ( t.day < 0 || t.day > MAXDAY || t.timeTick < 0 || evt.priority < 0 || evt.priority > MAXPRIORITY ) {
+            
+            throw new MyException("HeapEventSet.key: time or priority out of the packed range " + evt + " priority " + evt.priority);
+        }
+        
+        return ( (long)t.day << 39 ) | ( (long)t.timeTick << 8 ) | ( MAXPRIORITY - evt.priority );
+    }
+    
+    @Override
+    public boolean isEmpty() { return size == 0; }
+    
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Event first() {
+        
+        return size == 0 ? null : events[0];
+    }
+    
+    @Override
+    public Event pollFirst() {
+        
+        if ( size == 0 ) {
+            
+            return null;
+        }
+        
+        Event top = events[0];
+        top.heapSlot = -1;
+        
+        modCount++;
+        int last = --size;
+        
+        Event e = events[last];
+        long k = keys[last];
+        long id = ids[last];
+        events[last] = null;
+        
+        if ( last > 0 ) {
+            
+            siftDown( 0, e, k, id );
+        }
+        
+        return top;
+    }
+    
+    @Override
+    public boolean add( Event evt ) {
+        
+        if ( contains( evt ) ) {
+            
+            return false;
+        }
+        
+        long k = key( evt );
+        
+        if ( size == events.length ) {
+            
+            grow();
+        }
+        
+        modCount++;
+        siftUp( size++, evt, k, evt.id );
+        
+        return true;
+    }
+    
+    @Override
+    public boolean remove( Event evt ) {   // O( log n ) through the slot kept in the event
+        
+        if ( !contains( evt ) ) {
+            
+            return false;
+        }
+        
+        removeAt( evt.heapSlot );
+        
+        return true;
+    }
+    
+    public boolean contains( Event evt ) {
+        
+        int i = evt.heapSlot;
+        
+        return i >= 0 && i < size && events[i] == evt;
+    }
+    
+    @Override
+    public Iterator<Event> iterator() { return new Itr(); }
+    
+    //----- heap internals
+    
+    private void grow() {
+        
+        int n = events.length << 1;
+        
+        if ( n < 0 ) {
+            
+            throw new MyException("HeapEventSet.grow: capacity overflow");
+        }
+        
+        Event[] e = new Event[n];
+        long[] k = new long[n];
+        long[] id = new long[n];
+        
+        System.arraycopy( events, 0, e, 0, size );
+        System.arraycopy( keys, 0, k, 0, size );
+        System.arraycopy( ids, 0, id, 0, size );
+        
+        events = e;
+        keys = k;
+        ids = id;
+    }
+    
+    private void siftUp( int i, Event e, long k, long id ) {   // moves the hole at i up, then stores e there
+        
+        while ( i > 0 ) {
+            
+            int p = ( i - 1 ) / D;
+            
+            if ( k > keys[p] || ( k == keys[p] && id > ids[p] ) ) {
+                
+                break;
+            }
+            
+            events[i] = events[p];
+            events[i].heapSlot = i;
+            keys[i] = keys[p];
+            ids[i] = ids[p];
+            i = p;
+        }
+        
+        events[i] = e;
+        e.heapSlot = i;
+        keys[i] = k;
+        ids[i] = id;
+    }
+    
+    private void siftDown( int i, Event e, long k, long id ) {
+        
+        while ( true ) {
+            
+            int c = i * D + 1;
+            
+            if ( c >= size ) {
+                
+                break;
+            }
+            
+            int end = c + D < size ? c + D : size;
+            int best = c;
+            
+            for ( int j = c + 1; j < end; j++ ) {
+                
+                if ( keys[j] < keys[best] || ( keys[j] == keys[best] && ids[j] < ids[best] ) ) {
+                    
+                    best = j;
+                }
+            }
+            
+            if ( k < keys[best] || ( k == keys[best] && id < ids[best] ) ) {
+                
+                break;
+            }
+            
+            events[i] = events[best];
+            events[i].heapSlot = i;
+            keys[i] = keys[best];
+            ids[i] = ids[best];
+            i = best;
+        }
+        
+        events[i] = e;
+        e.heapSlot = i;
+        keys[i] = k;
+        ids[i] = id;
+    }
+    
+    private Event removeAt( int i ) {  // returns the moved last element if it ended up before i, null otherwise
+        
+        events[i].heapSlot = -1;
+        
+        modCount++;
+        int last = --size;
+        
+        if ( last == i ) {
+            
+            events[i] = null;
+            return null;
+        }
+        
+        Event moved = events[last];
+        long k = keys[last];
+        long id = ids[last];
+        events[last] = null;
+        
+        siftDown( i, moved, k, id );
+        
+        if ( events[i] == moved ) {
+            
+            siftUp( i, moved, k, id );
+            
+            if ( events[i] != moved ) {
+                
+                return moved;
+            }
+        }
+        
+        return null;
+    }
+    
+    private class Itr implements Iterator<Event> {     // array order; elements moved behind the cursor by remove() are visited at the end
+        
+        private int cursor = 0;
+        private int lastRet = -1;
+        private Event lastRetElt = null;
+        private ArrayDeque<Event> forgetMeNot = null;
+        private int expectedModCount = modCount;
+        
+        @Override
+        public boolean hasNext() {
+            
+            return cursor < size || ( forgetMeNot != null && !forgetMeNot.isEmpty() );
+        }
+        
+        @Override
+        public Event next() {
+            
+            if ( expectedModCount != modCount ) {
+                
+                throw new ConcurrentModificationException();
+            }
+            
+            if ( cursor < size ) {
+                
+                lastRet = cursor++;
+                return events[lastRet];
+            }
+            
+            if ( forgetMeNot != null ) {
+                
+                lastRet = -1;
+                lastRetElt = forgetMeNot.poll();
+                
+                if ( lastRetElt != null ) {
+                    
+                    return lastRetElt;
+                }
+            }
+            
+            throw new NoSuchElementException();
+        }
+        
+        @Override
+        public void remove() {
+            
+            if ( expectedModCount != modCount ) {
+                
+                throw new ConcurrentModificationException();
+            }
+            
+            if ( lastRet != -1 ) {
+                
+                Event moved = removeAt( lastRet );
+                lastRet = -1;
+                
+                if ( moved == null ) {
+                    
+                    cursor--;   // slot lastRet now holds an element not yet visited
+                }
+                else {
+                    
+                    if ( forgetMeNot == null ) {
+                        
+                        forgetMeNot = new ArrayDeque<>();
+                    }
+                    
+                    forgetMeNot.add( moved );
+                }
+            }
+            else if ( lastRetElt != null ) {
+                
+                HeapEventSet.this.remove( lastRetElt );
+                lastRetElt = null;
+            }
+            else {
+                
+                throw new IllegalStateException();
+            }
+            
+            expectedModCount = modCount;
+        }
+    }
+}
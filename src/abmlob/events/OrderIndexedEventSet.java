@@ -0,0 +1,268 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class OrderIndexedEventSet implements EventSet {    // keeps order id -> pending EvtRemoveOrder / EvtOrderExpiration next to any EventSet
+    
+    private static class Attached {   // the pending events of one order id
+        
+        long orderId;
+        final ArrayList<Event> events = new ArrayList<>( 2 );
+    }
+    
+    public EventSet events;
+    
+    // all instruments under one id, filtered on lookup; open addressing on the id ( linear probing ) and reused lists, 
+    // so that lookups box nothing and a steady queue allocates nothing
+    
+    private Attached[] byOrder = new Attached[64];    // null marks a free slot
+    private int noOfIds = 0;
+    private ArrayDeque<Attached> spare = new ArrayDeque<>();
+    
+    public OrderIndexedEventSet( EventSet events ) {
+        
+        this.events = events;
+    }
+    
+    private static long orderIdOf( Event evt ) {  // -1 if the event is not attached to an order, or its owner keeps it ( EventQueue.schedule )
+        
+        if ( evt.owned ) {
+            
+            return -1;
+        }
+        
+        int type = evt.typeId();
+        
+        if ( type == EvtRemoveOrder.TYPE ) {
+            
+            return ((EvtRemoveOrder)evt).orderId;
+        }
+        
+        if ( type == EvtOrderExpiration.TYPE ) {
+            
+            return ((EvtOrderExpiration)evt).orderId;
+        }
+        
+        return -1;
+    }
+    
+    private void index( Event evt ) {
+        
+        long orderId = orderIdOf( evt );
+        
+        if ( orderId != -1 ) {
+            
+            int i = find( orderId );
+            
+            if ( i < 0 ) {
+                
+                if ( 2 * ( noOfIds + 1 ) > byOrder.length ) {
+                    
+                    grow();
+                    i = find( orderId );
+                }
+                
+                Attached list = spare.isEmpty() ? new Attached() : spare.pollLast();
+                list.orderId = orderId;
+                
+                byOrder[ -i - 1 ] = list;
+                noOfIds++;
+            }
+            
+            byOrder[ i < 0 ? -i - 1 : i ].events.add( evt );
+        }
+    }
+    
+    private void unindex( Event evt ) {
+        
+        long orderId = orderIdOf( evt );
+        
+        if ( orderId != -1 ) {
+            
+            int slot = find( orderId );
+            
+            if ( slot >= 0 ) {
+                
+                Attached list = byOrder[slot];
+                
+                for ( int i = 0; i < list.events.size(); i++ ) {
+                    
+                    if ( list.events.get(i) == evt ) {
+                        
+                        list.events.remove(i);
+                        break;
+                    }
+                }
+                
+                if ( list.events.isEmpty() ) {
+                    
+                    free( slot );
+                    spare.addLast( list );
+                }
+            }
+        }
+    }
+    
+    public List<Event> attached( long orderId ) {   // pending events of the order id ( any instrument ), null if none; do not modify
+        
+        int i = find( orderId );
+        
+        return i < 0 ? null : byOrder[i].events;
+    }
+    
+    public int noOfIndexedOrders() { return noOfIds; }
+    
+    private static int hash( long orderId, int mask ) {
+        
+        long h = orderId * 0x9E3779B97F4A7C15L;
+        
+        return (int)( h >>> 32 ) & mask;
+    }
+    
+    private int find( long orderId ) {  // slot of the id, or -( free slot ) - 1
+        
+        int mask = byOrder.length - 1;
+        int i = hash( orderId, mask );
+        
+        while ( byOrder[i] != null ) {
+            
+            if ( byOrder[i].orderId == orderId ) {
+                
+                return i;
+            }
+            
+            i = ( i + 1 ) & mask;
+        }
+        
+        return -i - 1;
+    }
+    
+    private void free( int i ) {    // backward shift, so that no probe sequence is broken
+        
+        int mask = byOrder.length - 1;
+        
+        byOrder[i] = null;
+        noOfIds--;
+        
+        for ( int j = ( i + 1 ) & mask; byOrder[j] != null; j = ( j + 1 ) & mask ) {
+            
+            int k = hash( byOrder[j].orderId, mask );
+            
+            if ( i <= j ? ( i < k && k <= j ) : ( i < k || k <= j ) ) {
+                
+                continue;   // still reachable from its home slot
+            }
+            
+            byOrder[i] = byOrder[j];
+            byOrder[j] = null;
+            i = j;
+        }
+    }
+    
+    private void grow() {
+        
+        Attached[] old = byOrder;
+        
+        byOrder = new Attached[ 2 * old.length ];
+        
+        for ( int i = 0; i < old.length; i++ ) {
+            
+            if ( old[i] != null ) {
+                
+                byOrder[ -find( old[i].orderId ) - 1 ] = old[i];
+            }
+        }
+    }
+    
+    @Override
+    public boolean isEmpty() { return events.isEmpty(); }
+    
+    @Override
+    public int size() { return events.size(); }
+
+    @Override
+    public Event first() { return events.first(); }
+    
+    @Override
+    public Event pollFirst() {
+        
+        Event evt = events.pollFirst();
+        
+        if ( evt != null ) {
+            
+            unindex( evt );
+        }
+        
+        return evt;
+    }
+    
+    @Override
+    public boolean add( Event evt ) {
+        
+        if ( !events.add( evt ) ) {
+            
+            return false;
+        }
+        
+        index( evt );
+        
+        return true;
+    }
+    
+    @Override
+    public boolean remove( Event evt ) {
+        
+        if ( !events.remove( evt ) ) {
+            
+            return false;
+        }
+        
+        unindex( evt );
+        
+        return true;
+    }
+    
+    @Override
+    public Iterator<Event> iterator() {
+        
+        final Iterator<Event> itr = events.iterator();
+        
+        return new Iterator<Event>() {
+            
+            private Event last;
+            
+            @Override
+            public boolean hasNext() { return itr.hasNext(); }
+            
+            @Override
+            public Event next() {
+                
+                last = itr.next();
+                return last;
+            }
+            
+            @Override
+            public void remove() {
+                
+                itr.remove();
+                unindex( last );
+            }
+        };
+    }
+}
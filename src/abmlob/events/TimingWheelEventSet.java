@@ -0,0 +1,411 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import ccloop.Consts;
+import ccloop.MyException;
+import ccloop.TimeStamp;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TimingWheelEventSet implements EventSet {   // hierarchical timing wheel over absolute ticks, O( 1 ) amortised add and poll
+    
+    //----- an event due at tick t > now sits on the level of the highest base-256 digit where t and now differ, in the slot
+    // of that digit of t; moving now to the start of a slot cascades its events to the lower levels. Events with t <= now
+    // ( including events scheduled behind the wheel ) wait in a heap on the full key, which keeps the same-tick order by
+    // priority and id ( see EventCompByTimePriority )
+    
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 8;    // 64-bit absolute ticks
+    
+    private long now;
+    private HeapEventSet due;
+    private Bucket[][] wheels;      // [level][slot], allocated on first use
+    private long[][] occupied;      // [level][slot / 64] non-empty slots
+    private int size;
+    private int modCount;
+    
+    private static class Bucket {   // unordered
+        
+        Event[] events = new Event[4];
+        int size;
+        
+        void add( Event evt ) {
+            
+            if ( size == events.length ) {
+                
+                Event[] e = new Event[ size << 1 ];
+                System.arraycopy( events, 0, e, 0, size );
+                events = e;
+            }
+            
+            events[size++] = evt;
+        }
+        
+        void removeAt( int i ) {    // the last event takes slot i
+            
+            events[i] = events[--size];
+            events[size] = null;
+        }
+    }
+    
+    public TimingWheelEventSet() {
+        
+        this.now = 0;
+        this.due = new HeapEventSet( 64 );
+        this.wheels = new Bucket[LEVELS][SLOTS];
+        this.occupied = new long[LEVELS][SLOTS / 64];
+        this.size = 0;
+    }
+    
+    public static long tick( Event evt ) {  // absolute tick, a day spans Consts.TIMETICKSPERDAY + 1 ticks ( timeTick may equal it )
+        
+        TimeStamp t = evt.eventTime;
+        
+        if ( t.day < 0 || t.timeTick < 0 ) {
+            
+            throw new MyException("TimingWheelEventSet.tick: negative time " + evt);
+        }
+        
+        return (long)t.day * ( Consts.TIMETICKSPERDAY + 1L ) + t.timeTick;
+    }
+    
+    private static int level( long t, long now ) {     // t > now
+        
+        return ( 63 - Long.numberOfLeadingZeros( t ^ now ) ) / BITS;
+    }
+    
+    private static int slot( long t, int level ) {
+        
+        return (int)( t >>> ( BITS * level ) ) & MASK;
+    }
+    
+    private void place( Event evt, long t ) {
+        
+        if ( t <= now ) {
+            
+            due.add( evt );
+            return;
+        }
+        
+        int l = level( t, now );
+        int s = slot( t, l );
+        
+        Bucket b = wheels[l][s];
+        
+        if ( b == null ) {
+            
+            b = new Bucket();
+            wheels[l][s] = b;
+        }
+        
+        b.add( evt );
+        occupied[l][s >>> 6] |= 1L << ( s & 63 );
+    }
+    
+    private int nextOccupied( int level, int from ) {  // first non-empty slot >= from, -1 if none
+        
+        for ( int w = from >>> 6; w < SLOTS / 64; w++ ) {
+            
+            long bits = occupied[level][w];
+            
+            if ( w == from >>> 6 ) {
+                
+                bits &= -1L << ( from & 63 );
+            }
+            
+            if ( bits != 0 ) {
+                
+                return ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+            }
+        }
+        
+        return -1;
+    }
+    
+    private void advance() {    // due is empty and the wheel is not: move now to the next non-empty slot, cascading down
+        
+        while ( due.isEmpty() ) {
+            
+            int l = 0;
+            int s = -1;
+            
+            for ( ; l < LEVELS; l++ ) {
+                
+                s = nextOccupied( l, slot( now, l ) + 1 );
+                
+                if ( s >= 0 ) {
+                    
+                    break;
+                }
+            }
+            
+            if ( s < 0 ) {
+                
+                throw new MyException("TimingWheelEventSet.advance: " + size + " events counted but none found");
+            }
+            
+            int low = BITS * l;            // digits below the level are cleared, the level digit becomes s
+            int high = low + BITS;
+            
+            now = ( high < 64 ? ( now >>> high ) << high : 0 ) | ( (long)s << low );
+            
+            Bucket b = wheels[l][s];
+            occupied[l][s >>> 6] &= ~( 1L << ( s & 63 ) );
+            
+            int n = b.size;
+            Event[] events = b.events;
+            b.size = 0;     // events land on lower levels or in due, never back in b
+            
+            for ( int i = 0; i < n; i++ ) {
+                
+                Event evt = events[i];
+                events[i] = null;
+                
+                place( evt, tick( evt ) );
+            }
+        }
+    }
+    
+    @Override
+    public boolean isEmpty() { return size == 0; }
+    
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Event first() {
+        
+        if ( size == 0 ) {
+            
+            return null;
+        }
+        
+        if ( due.isEmpty() ) {
+            
+            advance();
+        }
+        
+        return due.first();
+    }
+    
+    @Override
+    public Event pollFirst() {
+        
+        if ( size == 0 ) {
+            
+            return null;
+        }
+        
+        if ( due.isEmpty() ) {
+            
+            advance();
+        }
+        
+        modCount++;
+        size--;
+        
+        return due.pollFirst();
+    }
+    
+    @Override
+    public boolean add( Event evt ) {  // false if the event is already pending, in due or in its bucket
+        
+        long t = tick( evt );
+        
+        if ( due.contains( evt ) || ( t > now && find( evt, t ) >= 0 ) ) {
+            
+            return false;
+        }
+        
+        modCount++;
+        size++;
+        place( evt, t );
+        
+        return true;
+    }
+    
+    private int find( Event evt, long t ) {    // position of evt in the bucket its tick maps to ( t > now ), -1 if absent
+        
+        int l = level( t, now );
+        Bucket b = wheels[l][ slot( t, l ) ];
+        
+        if ( b != null ) {
+            
+            for ( int i = 0; i < b.size; i++ ) {
+                
+                if ( b.events[i] == evt ) {
+                    
+                    return i;
+                }
+            }
+        }
+        
+        return -1;
+    }
+    
+    @Override
+    public boolean remove( Event evt ) {   // O( bucket ), the bucket follows from the event time
+        
+        if ( due.remove( evt ) ) {
+            
+            modCount++;
+            size--;
+            
+            return true;
+        }
+        
+        long t = tick( evt );
+        
+        if ( t <= now ) {
+            
+            return false;
+        }
+        
+        int i = find( evt, t );
+        
+        if ( i < 0 ) {
+            
+            return false;
+        }
+        
+        int l = level( t, now );
+        removeAt( l, slot( t, l ), i );
+        
+        return true;
+    }
+    
+    private void removeAt( int l, int s, int i ) {
+        
+        Bucket b = wheels[l][s];
+        b.removeAt( i );
+        
+        if ( b.size == 0 ) {
+            
+            occupied[l][s >>> 6] &= ~( 1L << ( s & 63 ) );
+        }
+        
+        modCount++;
+        size--;
+    }
+    
+    @Override
+    public Iterator<Event> iterator() { return new Itr(); }
+    
+    private class Itr implements Iterator<Event> {     // due events first ( array order ), then the wheel slot by slot
+        
+        private Iterator<Event> dueItr = due.iterator();
+        private boolean inDue = true;
+        private int l = 0;
+        private int s = 0;
+        private int i = 0;      // next position in wheels[l][s]
+        private boolean canRemove = false;
+        private int expectedModCount = modCount;
+        
+        private boolean seek() {   // positions l, s, i on the next wheel event
+            
+            while ( l < LEVELS ) {
+                
+                Bucket b = wheels[l][s];
+                
+                if ( b != null && i < b.size ) {
+                    
+                    return true;
+                }
+                
+                i = 0;
+                
+                if ( ++s == SLOTS ) {
+                    
+                    s = 0;
+                    l++;
+                }
+            }
+            
+            return false;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            
+            if ( inDue && dueItr.hasNext() ) {
+                
+                return true;
+            }
+            
+            return seek();
+        }
+        
+        @Override
+        public Event next() {
+            
+            if ( expectedModCount != modCount ) {
+                
+                throw new ConcurrentModificationException();
+            }
+            
+            if ( inDue ) {
+                
+                if ( dueItr.hasNext() ) {
+                    
+                    canRemove = true;
+                    return dueItr.next();
+                }
+                
+                inDue = false;
+            }
+            
+            if ( !seek() ) {
+                
+                throw new NoSuchElementException();
+            }
+            
+            canRemove = true;
+            
+            return wheels[l][s].events[i++];
+        }
+        
+        @Override
+        public void remove() {
+            
+            if ( expectedModCount != modCount ) {
+                
+                throw new ConcurrentModificationException();
+            }
+            
+            if ( !canRemove ) {
+                
+                throw new IllegalStateException();
+            }
+            
+            canRemove = false;
+            
+            if ( inDue ) {
+                
+                dueItr.remove();
+                modCount++;
+                size--;
+            }
+            else {
+                
+                removeAt( l, s, --i );  // the moved last event is visited next
+            }
+            
+            expectedModCount = modCount;
+        }
+    }
+}
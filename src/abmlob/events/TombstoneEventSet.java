@@ -0,0 +1,217 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TombstoneEventSet implements EventSet {   // O( 1 ) cancellation: dead events stay queued until they reach the head or a compaction
+    
+    public static int MINCOMPACTION = 1024;     // tombstones tolerated before the ratio check applies
+    
+    public EventSet events;
+    
+    private int dead;   // tombstones still inside events
+    private long noOfCompactions;
+    
+    public TombstoneEventSet( EventSet events ) {
+        
+        this.events = events;
+        this.dead = 0;
+        this.noOfCompactions = 0;
+    }
+    
+    public boolean cancel( Event evt ) {    // false if the event is not pending or already cancelled
+        
+        if ( !evt.queued || evt.dead ) {
+            
+            return false;
+        }
+        
+        evt.dead = true;
+        dead++;
+        
+        return true;    // compaction is left to add(), so cancelling is safe while iterating
+    }
+    
+    public void compact() {     // physically removes every tombstone, O( n )
+        
+        Iterator<Event> itr = events.iterator();
+        
+        while ( itr.hasNext() ) {
+            
+            Event evt = itr.next();
+            
+            if ( evt.dead ) {
+                
+                itr.remove();
+                evt.queued = false;
+            }
+        }
+        
+        dead = 0;
+        noOfCompactions++;
+    }
+    
+    public int noOfTombstones() { return dead; }
+    
+    public long noOfCompactions() { return noOfCompactions; }
+    
+    private void skipDead() {
+        
+        Event evt;
+        
+        while ( dead > 0 && ( evt = events.first() ) != null && evt.dead ) {
+            
+            events.pollFirst();
+            evt.queued = false;
+            dead--;
+        }
+    }
+    
+    @Override
+    public boolean isEmpty() { return size() == 0; }
+    
+    @Override
+    public int size() { return events.size() - dead; }
+
+    @Override
+    public Event first() {
+        
+        skipDead();
+        
+        return events.first();
+    }
+    
+    @Override
+    public Event pollFirst() {
+        
+        skipDead();
+        
+        Event evt = events.pollFirst();
+        
+        if ( evt != null ) {
+            
+            evt.queued = false;
+        }
+        
+        return evt;
+    }
+    
+    @Override
+    public boolean add( Event evt ) {
+        
+        if ( dead >= MINCOMPACTION && dead > events.size() / 2 ) {  // more tombstones than live events
+            
+            compact();
+        }
+        
+        if ( evt.queued ) {
+            
+            if ( !evt.dead ) {
+                
+                return false;
+            }
+            
+            evt.dead = false;   // cancelled but not yet dropped: still in place, eventTime and priority must not have changed
+            dead--;
+            
+            return true;
+        }
+        
+        if ( !events.add( evt ) ) {
+            
+            return false;
+        }
+        
+        evt.queued = true;
+        evt.dead = false;
+        
+        return true;
+    }
+    
+    @Override
+    public boolean remove( Event evt ) {    // physical removal, false for a tombstone ( it was already gone logically )
+        
+        if ( !evt.queued || !events.remove( evt ) ) {
+            
+            return false;
+        }
+        
+        evt.queued = false;
+        
+        if ( evt.dead ) {
+            
+            dead--;
+            return false;
+        }
+        
+        return true;
+    }
+    
+    @Override
+    public Iterator<Event> iterator() {     // live events only
+        
+        final Iterator<Event> itr = events.iterator();
+        
+        return new Iterator<Event>() {
+            
+            private Event next = advance();
+            private Event last;
+            
+            private Event advance() {
+                
+                while ( itr.hasNext() ) {
+                    
+                    Event evt = itr.next();
+                    
+                    if ( !evt.dead ) {
+                        
+                        return evt;
+                    }
+                }
+                
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() { return next != null; }
+            
+            @Override
+            public Event next() {
+                
+                if ( next == null ) {
+                    
+                    throw new NoSuchElementException();
+                }
+                
+                last = next;
+                next = advance();
+                
+                return last;
+            }
+            
+            @Override
+            public void remove() {
+                
+                if ( last == null || !TombstoneEventSet.this.cancel( last ) ) {  // the underlying iterator has already moved past last
+                    
+                    throw new IllegalStateException();
+                }
+                
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.events;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+public class TreeSetEventSet implements EventSet {    // red-black tree ordered by EventCompByTimePriority, iterates in dispatch order
+    
+    public TreeSet<Event> events;
+    
+    public TreeSetEventSet() {
+        
+        this.events = new TreeSet<>( new EventCompByTimePriority() );
+    }
+    
+    @Override
+    public boolean isEmpty() { return events.isEmpty(); }
+    
+    @Override
+    public int size() { return events.size(); }
+
+    @Override
+    public Event first() {
+        
+        return events.isEmpty() ? null : events.first();
+    }
+    
+    @Override
+    public Event pollFirst() { return events.pollFirst(); }
+    
+    @Override
+    public boolean add( Event evt ) { return events.add( evt ); }
+    
+    @Override
+    public boolean remove( Event evt ) { return events.remove( evt ); }
+    
+    @Override
+    public Iterator<Event> iterator() { return events.iterator(); }
+}
@@ -0,0 +1,65 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import ccloop.TimeStamp;
+
+public class ExecutionReport {  // one outbound slot, written by the engine thread and read by its producer
+    
+    public static final int ACK = 0;    // NEW accepted by the engine
+    public static final int FILL = 1;   // of an order entered through the gateway
+    public static final int REJECT = 2;     // the command was refused, see reason
+    
+    //----- reject reasons
+    
+    public static final int BAD_INSTRUMENT = 1;
+    public static final int BAD_ACCOUNT = 2;    // no account, or registered to another producer ( NEW )
+    public static final int BAD_SIZE = 3;
+    public static final int BAD_PRICE = 4;
+    public static final int BAD_LIFETIME = 5;
+    public static final int UNKNOWN_ORDER = 6;  // CANCEL or MODIFY of an order the producer does not have working
+    public static final int NO_LIQUIDITY = 7;   // market order facing an empty side, dropped by the engine
+    
+    public int type;
+    public long clientSeq;      // of the command; a FILL carries the one of its NEW
+    public long gatewaySeq;     // engine-side sequence of the command, as clientSeq
+    public long submitNanos;    // as clientSeq
+    
+    public int instrument;
+    public long orderId;        // 0 for a NEW rejected before reaching the engine
+    public long tradeId;        // FILL only
+    public boolean isBuy;
+    public int price;
+    public int size;
+    public TimeStamp time;      // simulation time
+    public int reason;          // REJECT only
+    public long dropped;        // reports lost just before this one ( outbound backlog full ), see OutboundRing
+    
+    void copy( ExecutionReport r ) {
+        
+        this.type = r.type;
+        this.clientSeq = r.clientSeq;
+        this.gatewaySeq = r.gatewaySeq;
+        this.submitNanos = r.submitNanos;
+        this.instrument = r.instrument;
+        this.orderId = r.orderId;
+        this.tradeId = r.tradeId;
+        this.isBuy = r.isBuy;
+        this.price = r.price;
+        this.size = r.size;
+        this.time = r.time;
+        this.reason = r.reason;
+        this.dropped = r.dropped;
+    }
+}
@@ -0,0 +1,108 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import ccloop.MyException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class InboundRing {  // multi-producer single-consumer ring of preallocated OrderCommands
+    
+    private final OrderCommand[] slots;
+    private final int mask;
+    
+    private final AtomicLong claimed = new AtomicLong();    // next sequence handed to a producer
+    private final AtomicLongArray published;    // per slot: sequence + 1 once the producer finished writing it
+    private final AtomicLong consumed = new AtomicLong();   // next sequence the consumer reads, only it advances it
+    
+    public final int waitStrategy;  // producers waiting for a free slot
+    
+    public InboundRing( int capacity, int waitStrategy ) {
+        
+        if ( capacity < 2 || ( capacity & ( capacity - 1 ) ) != 0 ) {
+            
+            throw new MyException("InboundRing: capacity must be a power of two");
+        }
+        
+        this.slots = new OrderCommand[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray( capacity );
+        this.waitStrategy = waitStrategy;
+        
+        for ( int i = 0; i < capacity; i++ ) {
+            
+            slots[i] = new OrderCommand();
+        }
+    }
+    
+    public int capacity() { return slots.length; }
+    
+    //----- producers ( any thread ): claim, write the slot, publish
+    
+    public long claim() {   // back-pressure: waits while the ring is full
+        
+        long seq = claimed.getAndIncrement();
+        
+        while ( seq - consumed.get() >= slots.length ) {
+            
+            WaitStrategy.idle( waitStrategy );
+        }
+        
+        return seq;
+    }
+    
+    public long tryClaim() {    // -1 if the ring is full
+        
+        while ( true ) {
+            
+            long seq = claimed.get();
+            
+            if ( seq - consumed.get() >= slots.length ) {
+                
+                return -1;
+            }
+            
+            if ( claimed.compareAndSet( seq, seq + 1 ) ) {
+                
+                return seq;
+            }
+        }
+    }
+    
+    public OrderCommand slot( long seq ) { return slots[ (int) ( seq & mask ) ]; }
+    
+    public void publish( long seq ) {
+        
+        published.lazySet( (int) ( seq & mask ), seq + 1 );    // ordered after the slot writes
+    }
+    
+    //----- consumer ( engine thread )
+    
+    public OrderCommand peek() {    // next published command in sequence order, null if none yet
+        
+        long seq = consumed.get();
+        
+        return ( published.get( (int) ( seq & mask ) ) == seq + 1 ) ? slots[ (int) ( seq & mask ) ] : null;
+    }
+    
+    public void advance() {     // the peeked slot may be reused by producers
+        
+        consumed.lazySet( consumed.get() + 1 );
+    }
+    
+    public long size() {
+        
+        return claimed.get() - consumed.get();
+    }
+}
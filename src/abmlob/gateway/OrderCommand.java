@@ -0,0 +1,37 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import abmlob.agents.Agent;
+
+public class OrderCommand {     // one inbound slot, written by a producer and read by the engine thread
+    
+    public static final int NEW = 0;
+    public static final int CANCEL = 1;
+    public static final int MODIFY = 2;
+    
+    public int type;
+    public int producer;
+    public long clientSeq;      // producer's own numbering, echoed in the reports
+    public long submitNanos;    // System.nanoTime() when the command was claimed
+    
+    public Agent account;
+    public int instrument;
+    public boolean isBuy;
+    public boolean isLimit;
+    public int size;
+    public int price;
+    public int lifetime;        // ticks until expiration, 0 for none ( NEW )
+    public long orderId;        // CANCEL and MODIFY
+}
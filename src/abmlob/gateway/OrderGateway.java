@@ -0,0 +1,486 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import abmlob.agents.Agent;
+import abmlob.events.EvtSendOrderBatch;
+import abmlob.orderbook.MarketDataListener;
+import abmlob.orderbook.MatchingEngine;
+import abmlob.orderbook.Order;
+import abmlob.orderbook.OrderListener;
+import abmlob.orderbook.Quote;
+import abmlob.orderbook.Trade;
+import ccloop.MarketState;
+import ccloop.MyException;
+import ccloop.TimeStamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+public class OrderGateway implements MarketDataListener, OrderListener {  // concurrent order entry in front of the single-threaded engines
+    
+    // producers ( strategy threads, replay feeders ) submit from any thread; everything else runs on the thread that
+    // calls MarketState.processNextEvent: drain() turns the commands into one EvtSendOrderBatch per instrument
+    
+    // a NEW is acked or rejected once the engine has validated it ( MatchingEngine.orders ), and only the fills of 
+    // orders entered here are reported, to the producer that sent them
+    
+    private static class GatewayOrder {     // from drain until the last fill of the order has been reported
+        
+        int instrument;
+        long orderId;
+        int producer;
+        long clientSeq;
+        long gatewaySeq;
+        long submitNanos;
+        boolean isBuy;
+        int price;
+        int size;
+        TimeStamp retiredAt;    // null while the order is live
+    }
+    
+    public InboundRing inbound;
+    public boolean blockWhenFull;   // back-pressure: wait for a slot ( inbound.waitStrategy ) instead of rejecting
+    public int batchPriority = 5;
+    
+    private volatile OutboundRing[] outbound = new OutboundRing[0];    // indexed by producer id
+    private volatile IdentityHashMap<Agent, Integer> producerOf = new IdentityHashMap<>();    // copy on write
+    private int outboundCapacity;
+    
+    private long gatewaySeq;    // engine thread
+    private EvtSendOrderBatch[] batches = new EvtSendOrderBatch[1];    // per instrument, during drain
+    private ExecutionReport report = new ExecutionReport();    // reused, copied into the rings
+    
+    private ArrayList<HashMap<Long, GatewayOrder>> working = new ArrayList<>();    // per instrument, by order id ( unique within a book )
+    private ArrayDeque<GatewayOrder> retiring = new ArrayDeque<>();    // retired, in time order; fills may still be on their way
+    
+    public OrderGateway( int inboundCapacity, int outboundCapacity, int waitStrategy, boolean blockWhenFull ) {
+        
+        this.inbound = new InboundRing( inboundCapacity, waitStrategy );
+        this.outboundCapacity = outboundCapacity;
+        this.blockWhenFull = blockWhenFull;
+    }
+    
+    public synchronized int register( Agent account ) {     // returns the producer id, the only one allowed to send NEW orders for the agent
+        
+        if ( producerOf.containsKey( account ) ) {
+            
+            throw new MyException("OrderGateway.register: agent #" + account.id + " already has a producer");
+        }
+        
+        int producer = outbound.length;
+        
+        OutboundRing[] rings = Arrays.copyOf( outbound, producer + 1 );
+        rings[producer] = new OutboundRing( outboundCapacity );
+        
+        IdentityHashMap<Agent, Integer> map = new IdentityHashMap<>( producerOf );
+        map.put( account, producer );
+        
+        producerOf = map;
+        outbound = rings;
+        
+        return producer;
+    }
+    
+    public OutboundRing getOutbound( int producer ) { return outbound[producer]; }
+    
+    //----- producers ( any thread ); return false if the ring is full and blockWhenFull is not set
+    
+    // the fields are checked on the engine thread, where a bad command ends in a REJECT report for its producer
+    
+    public boolean sendNewOrder( int producer, long clientSeq, Agent account, int instrument, boolean isBuy, boolean isLimit, int size, int price, int lifetime ) {
+        
+        long seq = claim( producer );
+        
+        if ( seq < 0 ) {
+            
+            return false;
+        }
+        
+        OrderCommand c = fill( seq, OrderCommand.NEW, producer, clientSeq, instrument );
+        c.account = account;
+        c.isBuy = isBuy;
+        c.isLimit = isLimit;
+        c.size = size;
+        c.price = price;
+        c.lifetime = lifetime;
+        
+        inbound.publish( seq );
+        
+        return true;
+    }
+    
+    public boolean sendCancel( int producer, long clientSeq, int instrument, long orderId ) {
+        
+        long seq = claim( producer );
+        
+        if ( seq < 0 ) {
+            
+            return false;
+        }
+        
+        OrderCommand c = fill( seq, OrderCommand.CANCEL, producer, clientSeq, instrument );
+        c.orderId = orderId;
+        
+        inbound.publish( seq );
+        
+        return true;
+    }
+    
+    public boolean sendModify( int producer, long clientSeq, int instrument, long orderId, int newLimitPrice, int newOutstanding ) {
+        
+        long seq = claim( producer );
+        
+        if ( seq < 0 ) {
+            
+            return false;
+        }
+        
+        OrderCommand c = fill( seq, OrderCommand.MODIFY, producer, clientSeq, instrument );
+        c.orderId = orderId;
+        c.price = newLimitPrice;
+        c.size = newOutstanding;
+        
+        inbound.publish( seq );
+        
+        return true;
+    }
+    
+    private long claim( int producer ) {
+        
+        if ( producer < 0 || producer >= outbound.length ) {   // nowhere to send a reject to
+            
+            throw new MyException("OrderGateway: unknown producer #" + producer);
+        }
+        
+        return blockWhenFull ? inbound.claim() : inbound.tryClaim();
+    }
+    
+    private OrderCommand fill( long seq, int type, int producer, long clientSeq, int instrument ) {
+        
+        OrderCommand c = inbound.slot( seq );
+        
+        c.type = type;
+        c.producer = producer;
+        c.clientSeq = clientSeq;
+        c.submitNanos = System.nanoTime();
+        c.account = null;
+        c.instrument = instrument;
+        
+        return c;
+    }
+    
+    //----- engine thread
+    
+    public int drain( MarketState state, int maxCommands ) {    // queues the pending commands at the current time, returns their number
+        
+        TimeStamp now = state.clock.getCurTime();
+        
+        if ( batches.length < state.getNoOfInstruments() ) {
+            
+            batches = new EvtSendOrderBatch[ state.getNoOfInstruments() ];
+        }
+        
+        attach( state );
+        forgetRetired( now );
+        
+        int n = 0;
+        OrderCommand c;
+        
+        while ( n < maxCommands && ( c = inbound.peek() ) != null ) {
+            
+            gatewaySeq++;
+            n++;
+            
+            try {
+                
+                int reason = check( c, state );
+                
+                if ( reason != 0 ) {
+                    
+                    reply( ExecutionReport.REJECT, c, c.type == OrderCommand.NEW ? 0 : c.orderId, now );
+                    report.reason = reason;
+                    outbound[c.producer].offer( report );
+                    continue;
+                }
+                
+                if ( batches[c.instrument] == null ) {
+                    
+                    batches[c.instrument] = new EvtSendOrderBatch( state.eventQueue, now, c.instrument, batchPriority );
+                }
+                
+                EvtSendOrderBatch batch = batches[c.instrument];
+                
+                switch ( c.type ) {
+                    
+                    case OrderCommand.NEW:
+                        
+                        Order o = state.orderPool.acquire( state.getOrderBook( c.instrument ), c.account, c.isBuy, c.isLimit, c.size, c.price,
+                            c.lifetime > 0 ? state.clock.addTime( now, c.lifetime ) : null );
+                        
+                        batch.addNewOrder( o );
+                        
+                        GatewayOrder g = new GatewayOrder();
+                        g.instrument = c.instrument;
+                        g.orderId = o.getId();
+                        g.producer = c.producer;
+                        g.clientSeq = c.clientSeq;
+                        g.gatewaySeq = gatewaySeq;
+                        g.submitNanos = c.submitNanos;
+                        g.isBuy = c.isBuy;
+                        g.price = c.price;
+                        g.size = c.size;
+                        
+                        working.get( c.instrument ).put( g.orderId, g );   // acked or rejected by the engine, see orderAccepted
+                        break;
+                        
+                    case OrderCommand.CANCEL:
+                        
+                        batch.addCancel( c.orderId );
+                        break;
+                        
+                    case OrderCommand.MODIFY:
+                        
+                        batch.addModify( c.orderId, c.price, c.size );
+                        break;
+                }
+            }
+            finally {   // whatever happened to the command, its slot is given back: a bad one must not stall the ring
+                
+                c.account = null;
+                inbound.advance();
+            }
+        }
+        
+        for ( int i = 0; i < batches.length; i++ ) {
+            
+            if ( batches[i] != null ) {
+                
+                if ( !state.eventQueue.queue.add( batches[i] ) ) {
+                    
+                    throw new MyException("OrderGateway.drain: could not add EvtSendOrderBatch to state.eventQueue.queue");
+                }
+                
+                batches[i] = null;
+            }
+        }
+        
+        OutboundRing[] rings = outbound;
+        
+        for ( int i = 0; i < rings.length; i++ ) {
+            
+            rings[i].flushBacklog();
+        }
+        
+        return n;
+    }
+    
+    private int check( OrderCommand c, MarketState state ) {    // 0 if the command can go to the engine, else the reject reason
+        
+        if ( c.instrument < 0 || c.instrument >= state.getNoOfInstruments() ) {
+            
+            return ExecutionReport.BAD_INSTRUMENT;
+        }
+        
+        switch ( c.type ) {
+            
+            case OrderCommand.NEW:
+                
+                Integer account = c.account == null ? null : producerOf.get( c.account );
+                
+                if ( account == null || account != c.producer ) {
+                    
+                    return ExecutionReport.BAD_ACCOUNT;
+                }
+                
+                if ( c.size < 1 ) {
+                    
+                    return ExecutionReport.BAD_SIZE;
+                }
+                
+                if ( c.isLimit && c.price <= 0 ) {
+                    
+                    return ExecutionReport.BAD_PRICE;
+                }
+                
+                if ( c.lifetime < 0 ) {
+                    
+                    return ExecutionReport.BAD_LIFETIME;
+                }
+                
+                return 0;
+                
+            case OrderCommand.MODIFY:
+                
+                if ( c.size < 1 ) {
+                    
+                    return ExecutionReport.BAD_SIZE;
+                }
+                
+                if ( c.price <= 0 ) {
+                    
+                    return ExecutionReport.BAD_PRICE;
+                }
+                
+                return checkWorking( c );
+                
+            default:    // CANCEL
+                
+                return checkWorking( c );
+        }
+    }
+    
+    private int checkWorking( OrderCommand c ) {    // a cancel or modify must target a live order of the same producer
+        
+        GatewayOrder g = working.get( c.instrument ).get( c.orderId );
+        
+        if ( g == null || g.producer != c.producer || g.retiredAt != null ) {
+            
+            return ExecutionReport.UNKNOWN_ORDER;  // not entered by this producer, or already filled, canceled or expired
+        }
+        
+        return 0;
+    }
+    
+    private void attach( MarketState state ) {  // order events of every engine, including instruments added since the last drain
+        
+        while ( working.size() < state.getNoOfInstruments() ) {
+            
+            MatchingEngine engine = state.getMatchingEngine( working.size() );
+            
+            if ( engine.orders != null && engine.orders != this ) {
+                
+                throw new MyException("OrderGateway.drain: the engine of instrument " + working.size() + " already has an order listener");
+            }
+            
+            engine.orders = this;
+            working.add( new HashMap<Long, GatewayOrder>() );
+        }
+    }
+    
+    private void forgetRetired( TimeStamp now ) {   // the fill notifications of an order come at the time it retired, at the latest
+        
+        while ( !retiring.isEmpty() && retiring.peekFirst().retiredAt.compareTo( now ) < 0 ) {
+            
+            GatewayOrder g = retiring.pollFirst();
+            working.get( g.instrument ).remove( g.orderId );
+        }
+    }
+    
+    private ExecutionReport reply( int type, OrderCommand c, long orderId, TimeStamp now ) {   // fills the reused report for c
+        
+        report.type = type;
+        report.clientSeq = c.clientSeq;
+        report.gatewaySeq = gatewaySeq;
+        report.submitNanos = c.submitNanos;
+        report.instrument = c.instrument;
+        report.orderId = orderId;
+        report.tradeId = 0;
+        report.isBuy = c.isBuy;
+        report.price = c.price;
+        report.size = c.size;
+        report.time = now;
+        report.reason = 0;
+        
+        return report;
+    }
+    
+    private ExecutionReport reply( int type, GatewayOrder g, TimeStamp time ) {    // fills the reused report for g's NEW
+        
+        report.type = type;
+        report.clientSeq = g.clientSeq;
+        report.gatewaySeq = g.gatewaySeq;
+        report.submitNanos = g.submitNanos;
+        report.instrument = g.instrument;
+        report.orderId = g.orderId;
+        report.tradeId = 0;
+        report.isBuy = g.isBuy;
+        report.price = g.price;
+        report.size = g.size;
+        report.time = time;
+        report.reason = 0;
+        
+        return report;
+    }
+    
+    @Override
+    public void orderAccepted( Order o, TimeStamp time ) {     // engine thread, inside the dispatch of the batch
+        
+        GatewayOrder g = working.get( o.getInstrument() ).get( o.getId() );
+        
+        if ( g != null ) {
+            
+            outbound[g.producer].offer( reply( ExecutionReport.ACK, g, time ) );
+        }
+    }
+    
+    @Override
+    public void orderRejected( Order o, TimeStamp time ) {
+        
+        GatewayOrder g = working.get( o.getInstrument() ).remove( o.getId() );
+        
+        if ( g != null ) {
+            
+            reply( ExecutionReport.REJECT, g, time );
+            report.reason = ExecutionReport.NO_LIQUIDITY;
+            outbound[g.producer].offer( report );
+        }
+    }
+    
+    @Override
+    public void orderRetired( Order o, TimeStamp time ) {
+        
+        GatewayOrder g = working.get( o.getInstrument() ).get( o.getId() );
+        
+        if ( g != null ) {
+            
+            g.retiredAt = time;
+            retiring.addLast( g );
+        }
+    }
+    
+    @Override
+    public void onTrade( Trade t ) {    // engine thread: fills of gateway orders go back to the producers that sent them
+        
+        reportFill( t, t.buyerInit ? t.buyOrderId : t.sellOrderId, t.buyerInit, t.size );
+        
+        for ( int i = 0; i < t.getNoOfFills(); i++ ) {  // a level print names each passive order
+            
+            reportFill( t, t.passiveOrderId(i), !t.buyerInit, t.fillSize(i) );
+        }
+    }
+    
+    private void reportFill( Trade t, long orderId, boolean isBuy, int size ) {
+        
+        GatewayOrder g = working.size() > t.getInstrument() ? working.get( t.getInstrument() ).get( orderId ) : null;
+        
+        if ( g == null ) {
+            
+            return;     // not entered through the gateway
+        }
+        
+        reply( ExecutionReport.FILL, g, t.time );
+        report.tradeId = t.getId();
+        report.isBuy = isBuy;
+        report.price = t.price;
+        report.size = size;
+        
+        outbound[g.producer].offer( report );
+    }
+    
+    @Override
+    public void onQuote( Quote q ) {}
+}
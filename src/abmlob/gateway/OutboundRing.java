@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import ccloop.MyException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OutboundRing {     // single-producer ( engine thread ) single-consumer ring of ExecutionReports for one producer
+    
+    private final ExecutionReport[] slots;
+    private final int mask;
+    
+    private final AtomicLong written = new AtomicLong();    // engine side
+    private final AtomicLong read = new AtomicLong();       // producer side
+    
+    // the engine never waits on a slow reader ( it could be waiting on the inbound ring ): reports that do not fit stay 
+    // in a preallocated backlog of the same capacity; once that is full too, new reports are DROPPED and counted, and the 
+    // next report that gets through carries the number lost before it in ExecutionReport.dropped ( resynchronize on it )
+    
+    private final ExecutionReport[] backlog;
+    private int backlogHead;
+    private int backlogSize;
+    
+    private long pendingDrops;      // dropped since the last report that got through
+    private volatile long dropped;  // total, written by the engine thread only
+    
+    public OutboundRing( int capacity ) {
+        
+        if ( capacity < 2 || ( capacity & ( capacity - 1 ) ) != 0 ) {
+            
+            throw new MyException("OutboundRing: capacity must be a power of two");
+        }
+        
+        this.slots = new ExecutionReport[capacity];
+        this.backlog = new ExecutionReport[capacity];
+        this.mask = capacity - 1;
+        
+        for ( int i = 0; i < capacity; i++ ) {
+            
+            slots[i] = new ExecutionReport();
+            backlog[i] = new ExecutionReport();
+        }
+    }
+    
+    //----- engine thread
+    
+    boolean offer( ExecutionReport r ) {    // r is copied; false if it was dropped
+        
+        r.dropped = pendingDrops;
+        
+        if ( backlogSize == 0 && tryWrite( r ) ) {
+            
+            pendingDrops = 0;
+            return true;
+        }
+        
+        if ( backlogSize == backlog.length ) {
+            
+            pendingDrops++;
+            dropped++;
+            return false;
+        }
+        
+        backlog[ ( backlogHead + backlogSize ) & mask ].copy( r );
+        backlogSize++;
+        
+        pendingDrops = 0;
+        return true;
+    }
+    
+    void flushBacklog() {
+        
+        while ( backlogSize > 0 ) {
+            
+            if ( !tryWrite( backlog[ backlogHead ] ) ) {
+                
+                return;
+            }
+            
+            backlogHead = ( backlogHead + 1 ) & mask;
+            backlogSize--;
+        }
+    }
+    
+    public int backlogSize() { return backlogSize; }    // engine thread only
+    
+    public long dropped() { return dropped; }   // reports lost since the ring was created, any thread
+    
+    private boolean tryWrite( ExecutionReport r ) {
+        
+        long seq = written.get();
+        
+        if ( seq - read.get() >= slots.length ) {
+            
+            return false;
+        }
+        
+        slots[ (int) ( seq & mask ) ].copy( r );
+        written.lazySet( seq + 1 );
+        
+        return true;
+    }
+    
+    //----- producer thread
+    
+    public ExecutionReport poll( ExecutionReport target ) {     // copies the next report into target, null if none
+        
+        long seq = read.get();
+        
+        if ( seq == written.get() ) {
+            
+            return null;
+        }
+        
+        target.copy( slots[ (int) ( seq & mask ) ] );
+        read.lazySet( seq + 1 );
+        
+        return target;
+    }
+}
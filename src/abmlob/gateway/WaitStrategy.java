@@ -0,0 +1,43 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.gateway;
+
+import java.util.concurrent.locks.LockSupport;
+
+public final class WaitStrategy {   // how a thread waits on a full or an empty ring
+    
+    public static final int SPIN = 0;   // busy spin, lowest latency, burns a core
+    public static final int YIELD = 1;  // gives the core to other runnable threads
+    public static final int PARK = 2;   // sleeps PARKNANOS, for producers that are not latency critical
+    
+    public static long PARKNANOS = 50000;
+    
+    private WaitStrategy() {}
+    
+    public static void idle( int strategy ) {
+        
+        switch ( strategy ) {
+            
+            case SPIN:
+                break;
+                
+            case YIELD:
+                Thread.yield();
+                break;
+                
+            default:
+                LockSupport.parkNanos( PARKNANOS );
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.TimeStamp;
+
+public interface BookDeltaListener {    // incremental book changes, one frame per matching engine event
+    
+    void beginEvent( TimeStamp time );
+    
+    //----- order level ( L3 ); size is the order's outstanding, except for reduce where it is the executed or amended-away size
+    
+    void orderAdded( long orderId, boolean isBuy, int price, int size );
+    
+    void orderReduced( long orderId, boolean isBuy, int price, int size );
+    
+    void orderRemoved( long orderId, boolean isBuy, int price, int size );
+    
+    //----- price level ( L2 ); size is the new level total, 0 if the level is gone
+    
+    void levelChanged( boolean isBuy, int price, long size );
+    
+    void endEvent();
+}
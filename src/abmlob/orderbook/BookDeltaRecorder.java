@@ -0,0 +1,143 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.*;
+import java.util.Arrays;
+
+public class BookDeltaRecorder implements BookDeltaListener {   // compact columnar record of a delta stream, replayable
+    
+    public static final byte BEGIN = 0;
+    public static final byte ADD = 1;
+    public static final byte REDUCE = 2;
+    public static final byte REMOVE = 3;
+    public static final byte LEVEL = 4;
+    public static final byte END = 5;
+    
+    public boolean recordL3;
+    public boolean recordL2;
+    
+    private int records;
+    private byte[] type;    // record type, with the side in the high bit
+    private long[] key;     // order id, or packed time for BEGIN
+    private int[] price;
+    private long[] size;
+    
+    private static final long NEVER = Long.MAX_VALUE;   // packed null time
+    
+    public BookDeltaRecorder( boolean recordL3, boolean recordL2 ) {
+        
+        this.recordL3 = recordL3;
+        this.recordL2 = recordL2;
+        
+        this.records = 0;
+        this.type = new byte[1024];
+        this.key = new long[1024];
+        this.price = new int[1024];
+        this.size = new long[1024];
+    }
+    
+    private void append( byte t, boolean isBuy, long k, int p, long s ) {
+        
+        if ( records == type.length ) {
+            
+            type = Arrays.copyOf( type, records << 1 );
+            key = Arrays.copyOf( key, records << 1 );
+            price = Arrays.copyOf( price, records << 1 );
+            size = Arrays.copyOf( size, records << 1 );
+        }
+        
+        type[records] = (byte) ( isBuy ? t | 0x80 : t );
+        key[records] = k;
+        price[records] = p;
+        size[records] = s;
+        records++;
+    }
+    
+    private static long pack( TimeStamp t ) {   // preserves TimeStamp ordering
+        
+        return t == null ? NEVER : ( (long) t.day << 32 ) | t.timeTick;
+    }
+    
+    private static TimeStamp unpack( long t ) {
+        
+        return t == NEVER ? null : new TimeStamp( (int) ( t >>> 32 ), (int) t );
+    }
+    
+    @Override
+    public void beginEvent( TimeStamp time ) { append( BEGIN, false, pack( time ), 0, 0 ); }
+    
+    @Override
+    public void orderAdded( long orderId, boolean isBuy, int price, int size ) {
+        
+        if ( recordL3 ) { append( ADD, isBuy, orderId, price, size ); }
+    }
+    
+    @Override
+    public void orderReduced( long orderId, boolean isBuy, int price, int size ) {
+        
+        if ( recordL3 ) { append( REDUCE, isBuy, orderId, price, size ); }
+    }
+    
+    @Override
+    public void orderRemoved( long orderId, boolean isBuy, int price, int size ) {
+        
+        if ( recordL3 ) { append( REMOVE, isBuy, orderId, price, size ); }
+    }
+    
+    @Override
+    public void levelChanged( boolean isBuy, int price, long size ) {
+        
+        if ( recordL2 ) { append( LEVEL, isBuy, 0, price, size ); }
+    }
+    
+    @Override
+    public void endEvent() {
+        
+        if ( records > 0 && type[ records - 1 ] == BEGIN ) {   // nothing changed: drop the empty frame
+            
+            records--;
+        }
+        else {
+            
+            append( END, false, 0, 0, 0 );
+        }
+    }
+    
+    public int size() { return records; }
+    
+    public void clear() { records = 0; }
+    
+    public void replay( BookDeltaListener target ) {    // feeds the recorded stream to another listener
+        
+        for ( int i = 0; i < records; i++ ) {
+            
+            boolean isBuy = ( type[i] & 0x80 ) != 0;
+            
+            switch ( type[i] & 0x7f ) {
+                
+                case BEGIN: target.beginEvent( unpack( key[i] ) ); break;
+                case ADD: target.orderAdded( key[i], isBuy, price[i], (int) size[i] ); break;
+                case REDUCE: target.orderReduced( key[i], isBuy, price[i], (int) size[i] ); break;
+                case REMOVE: target.orderRemoved( key[i], isBuy, price[i], (int) size[i] ); break;
+                case LEVEL: target.levelChanged( isBuy, price[i], size[i] ); break;
+                case END: target.endEvent(); break;
+                    
+                default:
+                    
+                    throw new MyException("BookDeltaRecorder.replay: corrupt record " + i);
+            }
+        }
+    }
+}
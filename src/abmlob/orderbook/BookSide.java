@@ -0,0 +1,34 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+public interface BookSide extends Iterable<Order> {    // one side (bid or ask) of the order book
+
+    boolean isEmpty();
+    int size();         // number of resting orders
+    
+    Order first();      // highest priority order, null if the side is empty
+    Order pollFirst();
+    long firstLevelSize();  // total outstanding at the best price
+    
+    // aggregates the best maxLevels price levels into the arrays, returns the number of levels written
+    int copyLevels( int[] price, long[] size, int[] count, int maxLevels );
+    
+    boolean add( Order o );
+    boolean remove( Order o );
+    
+    void reduce( Order o, int size );   // in place size decrease, the order keeps its priority
+    
+    boolean endsOnOrder( int price, long size );    // true if the first size shares queued at price are a whole number of orders
+}
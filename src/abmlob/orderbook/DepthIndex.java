@@ -0,0 +1,266 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.MyException;
+import java.util.Arrays;
+
+public class DepthIndex {   // cumulative depth of one book side over price ticks (Fenwick trees)
+    
+    public boolean bidSide;
+    
+    public static final int MAXCAPACITY = 1 << 20;  // prices above it are kept in farPrice/ farVolume, so a stray quote cannot blow up the trees
+    
+    private int capacity;   // prices 1..capacity, power of two
+    private long[] volume;  // Fenwick trees, 1-based
+    private long[] notional;    // price * volume, for VWAP
+    
+    private int[] farPrice = new int[0];    // prices above MAXCAPACITY in ascending order, with their volume; normally empty
+    private long[] farVolume = new long[0];
+    private int noOfFar;
+    
+    private long totalVolume;
+    private long totalNotional;
+    
+    public DepthIndex( boolean bidSide ) {
+        
+        this.bidSide = bidSide;
+        
+        this.capacity = 1024;   // grows on demand
+        this.volume = new long[capacity + 1];
+        this.notional = new long[capacity + 1];
+    }
+    
+    public long getTotalVolume() { return totalVolume; }
+    
+    //----- point update at one price level ( size < 0 for fills, cancels, expirations )
+    
+    public void update( int price, long size ) {
+        
+        if ( price < 1 ) {
+            
+            throw new MyException("DepthIndex.update: price must be strictly positive");
+        }
+        
+        long value = size * price;
+        
+        totalVolume += size;
+        totalNotional += value;
+        
+        if ( price > MAXCAPACITY ) {
+            
+            updateFar( price, size );
+            return;
+        }
+        
+        if ( price > capacity ) {
+            
+            grow( price );
+        }
+        
+        for ( int i = price; i <= capacity; i += i & -i ) {
+            
+            volume[i] += size;
+            notional[i] += value;
+        }
+    }
+    
+    private void updateFar( int price, long size ) {   // sorted arrays, O( far prices ) but primitive
+        
+        int i = Arrays.binarySearch( farPrice, 0, noOfFar, price );
+        
+        if ( i >= 0 ) {
+            
+            farVolume[i] += size;
+            
+            if ( farVolume[i] == 0 ) {
+                
+                System.arraycopy( farPrice, i + 1, farPrice, i, noOfFar - i - 1 );
+                System.arraycopy( farVolume, i + 1, farVolume, i, noOfFar - i - 1 );
+                noOfFar--;
+            }
+            
+            return;
+        }
+        
+        if ( size == 0 ) {
+            
+            return;
+        }
+        
+        i = -i - 1;
+        
+        if ( noOfFar == farPrice.length ) {
+            
+            farPrice = Arrays.copyOf( farPrice, Math.max( 4, 2 * noOfFar ) );
+            farVolume = Arrays.copyOf( farVolume, farPrice.length );
+        }
+        
+        System.arraycopy( farPrice, i, farPrice, i + 1, noOfFar - i );
+        System.arraycopy( farVolume, i, farVolume, i + 1, noOfFar - i );
+        
+        farPrice[i] = price;
+        farVolume[i] = size;
+        noOfFar++;
+    }
+    
+    private void grow( int price ) {
+        
+        int newCapacity = capacity;
+        
+        while ( newCapacity < price ) {
+            
+            newCapacity <<= 1;
+        }
+        
+        long[] newVolume = new long[newCapacity + 1];
+        long[] newNotional = new long[newCapacity + 1];
+        
+        System.arraycopy( volume, 0, newVolume, 0, capacity + 1 );
+        System.arraycopy( notional, 0, newNotional, 0, capacity + 1 );
+        
+        // the new upper half is empty: only the nodes covering [1, 2^k] need the old grand total
+        
+        for ( int c = capacity << 1; c <= newCapacity; c <<= 1 ) {
+            
+            newVolume[c] = volume[capacity];
+            newNotional[c] = notional[capacity];
+        }
+        
+        volume = newVolume;
+        notional = newNotional;
+        capacity = newCapacity;
+    }
+    
+    //----- prefix sums over prices 1..price
+    
+    public long volumeUpTo( int price ) {
+        
+        long sum = 0;
+        
+        for ( int i = ( price > capacity ? capacity : price ); i > 0; i -= i & -i ) {
+            
+            sum += volume[i];
+        }
+        
+        for ( int i = 0; i < noOfFar && farPrice[i] <= price; i++ ) {
+            
+            sum += farVolume[i];
+        }
+        
+        return sum;
+    }
+    
+    private long notionalUpTo( int price ) {
+        
+        long sum = 0;
+        
+        for ( int i = ( price > capacity ? capacity : price ); i > 0; i -= i & -i ) {
+            
+            sum += notional[i];
+        }
+        
+        for ( int i = 0; i < noOfFar && farPrice[i] <= price; i++ ) {
+            
+            sum += farPrice[i] * farVolume[i];
+        }
+        
+        return sum;
+    }
+    
+    public long volumeBetween( int lowPrice, int highPrice ) {  // inclusive
+        
+        if ( highPrice < lowPrice ) {
+            
+            return 0;
+        }
+        
+        return volumeUpTo( highPrice ) - volumeUpTo( lowPrice - 1 );
+    }
+    
+    private int lowerBound( long target ) {     // smallest price with volumeUpTo( price ) >= target
+        
+        if ( target > volume[capacity] ) {  // beyond the trees ( volume[capacity] covers 1..capacity )
+            
+            target -= volume[capacity];
+            
+            for ( int i = 0; i < noOfFar; i++ ) {
+                
+                target -= farVolume[i];
+                
+                if ( target <= 0 ) {
+                    
+                    return farPrice[i];
+                }
+            }
+            
+            throw new MyException("DepthIndex.lowerBound: target beyond total volume");
+        }
+        
+        int pos = 0;
+        
+        for ( int step = capacity; step > 0; step >>= 1 ) {
+            
+            if ( pos + step <= capacity && volume[pos + step] < target ) {
+                
+                pos += step;
+                target -= volume[pos];
+            }
+        }
+        
+        return pos + 1;
+    }
+    
+    //----- sweep queries, walking away from the touch ( ask: upwards, bid: downwards )
+    
+    public int sweepPrice( long size ) {    // last price reached when taking size shares, 0 if the side is too thin
+        
+        if ( size <= 0 || size > totalVolume ) {
+            
+            return 0;
+        }
+        
+        return bidSide ? lowerBound( totalVolume - size + 1 ) : lowerBound( size );
+    }
+    
+    public long volumeAhead( int price ) {  // resting volume at prices better than price
+        
+        return bidSide ? totalVolume - volumeUpTo( price ) : volumeUpTo( price - 1 );
+    }
+    
+    public double sweepVwap( long size ) {  // average price paid for size shares, 0 if the side is too thin
+        
+        int last = sweepPrice( size );
+        
+        if ( last == 0 ) {
+            
+            return 0.0;
+        }
+        
+        long fullVolume = volumeAhead( last );  // levels consumed entirely before the last one
+        long fullNotional = bidSide ? totalNotional - notionalUpTo( last ) : notionalUpTo( last - 1 );
+        
+        return (double) ( fullNotional + ( size - fullVolume ) * last ) / size;
+    }
+    
+    public long volumeWithin( int touch, int ticks ) {  // resting volume from the touch up to ticks away from it
+        
+        if ( touch == 0 ) {
+            
+            return 0;
+        }
+        
+        return bidSide ? volumeBetween( touch - ticks, touch ) : volumeBetween( touch, touch + ticks );
+    }
+}
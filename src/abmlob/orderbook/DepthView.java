@@ -0,0 +1,179 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.Consts;
+
+public class DepthView {    // level-aggregated view (L2) of the top price levels of one book side
+    
+    public boolean bidSide;
+    public int maxLevels;   // K
+    
+    public int levels;      // levels currently in view, best first
+    public int[] price;
+    public long[] size;
+    public int[] count;
+    
+    public boolean complete;    // true if the side is known to have no levels beyond the view
+    
+    boolean dirty;  // a level left the view while others were hidden beyond it: reload on next read
+    
+    public DepthView( boolean bidSide, int maxLevels ) {
+        
+        this.bidSide = bidSide;
+        this.maxLevels = maxLevels;
+        
+        this.price = new int[maxLevels + 1];    // one extra slot to detect hidden levels on reload
+        this.size = new long[maxLevels + 1];
+        this.count = new int[maxLevels + 1];
+        
+        this.levels = 0;
+        this.complete = true;
+        this.dirty = false;
+    }
+    
+    private boolean better( int p1, int p2 ) {
+        
+        return bidSide ? p1 > p2 : p1 < p2;
+    }
+    
+    private int find( int p ) {
+        
+        for ( int i = 0; i < levels && !better( p, price[i] ); i++ ) {
+            
+            if ( price[i] == p ) {
+                
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    //----- incremental updates, called by OrderBook on every mutation
+    
+    void add( int p, int qty ) {
+        
+        if ( dirty ) {
+            
+            return;
+        }
+        
+        int i = 0;
+        
+        while ( i < levels && better( price[i], p ) ) {
+            
+            i++;
+        }
+        
+        if ( i < levels && price[i] == p ) {
+            
+            size[i] += qty;
+            count[i]++;
+            return;
+        }
+        
+        if ( i == maxLevels ) {     // new level beyond the view
+            
+            complete = false;
+            return;
+        }
+        
+        if ( levels == maxLevels ) {    // worst level drops out of the view
+            
+            complete = false;
+            levels--;
+        }
+        
+        System.arraycopy( price, i, price, i + 1, levels - i );
+        System.arraycopy( size, i, size, i + 1, levels - i );
+        System.arraycopy( count, i, count, i + 1, levels - i );
+        
+        price[i] = p;
+        size[i] = qty;
+        count[i] = 1;
+        levels++;
+    }
+    
+    void reduce( int p, int qty ) {
+        
+        if ( dirty ) {
+            
+            return;
+        }
+        
+        int i = find( p );
+        
+        if ( i >= 0 ) {
+            
+            size[i] -= qty;
+        }
+    }
+    
+    void remove( int p, int qty ) {
+        
+        if ( dirty ) {
+            
+            return;
+        }
+        
+        int i = find( p );
+        
+        if ( i < 0 ) {
+            
+            return;     // beyond the view
+        }
+        
+        size[i] -= qty;
+        count[i]--;
+        
+        if ( count[i] == 0 ) {
+            
+            System.arraycopy( price, i + 1, price, i, levels - i - 1 );
+            System.arraycopy( size, i + 1, size, i, levels - i - 1 );
+            System.arraycopy( count, i + 1, count, i, levels - i - 1 );
+            levels--;
+            
+            if ( !complete ) {
+                
+                dirty = true;
+            }
+        }
+    }
+    
+    void reload( BookSide side ) {
+        
+        int n = side.copyLevels( price, size, count, maxLevels + 1 );
+        
+        complete = ( n <= maxLevels );
+        levels = complete ? n : maxLevels;
+        dirty = false;
+    }
+    
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+
+        buf.append("DepthView ").append( bidSide ? "Bid" : "Ask" ).append(" (").append(levels).append( complete ? " levels)\n" : "+ levels)\n" );
+        
+        for ( int i = 0; i < levels; i++ ) {
+            
+            buf.append(i + 1).append(". ").append(size[i]).append("(").append(count[i]).append(" ord.) @").
+                    append( (double)price[i] / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
+        }
+
+        return(buf.toString());
+    }
+}
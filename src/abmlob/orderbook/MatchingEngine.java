@@ -13,14 +13,52 @@
  */
 package abmlob.orderbook;
 
+import abmlob.agents.Agent;
 import abmlob.events.*;
 import ccloop.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class MatchingEngine {    // manages order flow
     
     protected MarketState state;
     public OrderBook orderBook;
     public boolean IOC = false;    // imediate or cancel -- unexecuted part of a market order is canceled
+    public boolean SWEEP = false;  // consume a whole price level per matching step, aggressor updated once per level
+    public boolean LEVELPRINTS = false;    // with SWEEP: one aggregated trade per level instead of one per counterparty
+    
+    protected WorkingQuote quoteBefore = new WorkingQuote( null, 0, 0, 0, 0 );  // reused, top of book before each event
+    
+    protected ArrayList<Order> retired = new ArrayList<>();    // orders that reached a final state during the current event
+    
+    public boolean CONFLATE = false;   // one EvtNotifyMatch per event instead of one notification per fill and quote
+    
+    public MarketDataListener marketData = null;   // if set, trades and quotes go here in reused records instead of notify events
+    
+    public OrderListener orders = null;     // if set, told when a new order is accepted or rejected and when it is retired
+    
+    private Trade tradeRecord = new Trade();
+    private Quote quoteRecord = new Quote();
+    
+    private ArrayList<Trade> pendingTrades = new ArrayList<>();    // CONFLATE: fills of the current event
+    private Quote pendingQuote = null;
+    
+    private ArrayList<Order> swept = new ArrayList<>();    // counterparties filled by one sweep, purged from the queue together
+    
+    private int levelFills = 0;     // passive fills of the level print being built ( LEVELPRINTS ), 0 otherwise
+    private Agent[] fillAgents = new Agent[16];
+    private long[] fillOrderIds = new long[16];
+    private int[] fillSizes = new int[16];
+    
+    public boolean AUCTION = false;    // frequent batch auction: orders are collected unmatched and uncrossed at each EvtAuction
+    public int auctionInterval = 0;    // ticks between auctions once started, 0 if EvtAuction is scheduled from outside
+    public int lastAuctionPrice = 0;
+    
+    protected ArrayList<Order> auctionMarketOrders = new ArrayList<>();    // waiting for the next auction, in arrival order
+    
+    private int[] bidPrice = new int[64], askPrice = new int[64];   // level aggregates of the two sides, reused by runAuction
+    private long[] bidSize = new long[64], askSize = new long[64];
+    private int[] bidCount = new int[64], askCount = new int[64];
     
     public MatchingEngine( MarketState state, OrderBook orderBook ) {
         
@@ -32,47 +70,75 @@ public class MatchingEngine {    // manages order flow
 
         TimeStamp operTime = state.clock.getCurTime();
         
-        WorkingQuote currentQuote = orderBook.getWorkingQuote( null );
+        long topVersion = orderBook.getTopVersion();
+        orderBook.copyTopTo( quoteBefore );
         
-        if ( evt.getClass() == EvtSendNewOrder.class ) {
+        BookDeltaListener deltas = orderBook.getDeltaListener();
+        
+        if ( deltas != null ) { deltas.beginEvent( operTime ); }
+        
+        evt.accept( this, operTime );   // new order, modify, cancel or expiration; no-op for other events
+        
+        if ( orderBook.isTopChangedSince( topVersion ) && !orderBook.isTopEqualTo( quoteBefore ) ) {
 
-            if ( validateOrder( ((EvtSendNewOrder)evt).order, operTime ) ) {
+            // best bid/ask change: market order, limit order (crossing, at- or inside-spread), cancel or expire limit order
+            
+            publishQuote( operTime );
 
-                placeNewOrder( ((EvtSendNewOrder)evt).order, operTime, evt );   // returns tracePrice
-            }
-            // else do nothing
         }
         
-        if ( evt.getClass() == EvtModifyOrder.class ) {
+        flushNotifications( operTime );
+        
+        if ( deltas != null ) { deltas.endEvent(); }
+        
+        if ( Consts.DEBUGBOOK ) { orderBook.checkConsistency(); }
+        
+        releaseRetired();
+    }
+    
+    protected void flushNotifications( TimeStamp operTime ) {  // CONFLATE: a single notification for the whole event
+        
+        if ( pendingTrades.isEmpty() && pendingQuote == null ) {
             
-            modifyOrder( ((EvtModifyOrder)evt).order, operTime,
-                    ((EvtModifyOrder)evt).newLimitPrice,
-                    ((EvtModifyOrder)evt).newOutstanding, evt );    // returns tracePrice
+            return;
         }
         
-        if ( evt.getClass() == EvtRemoveOrder.class ) {
+        EvtNotifyMatch evt = new EvtNotifyMatch( state.eventQueue, operTime, orderBook.instrument, new ArrayList<>( pendingTrades ), pendingQuote );
         
-            removeOrder( ((EvtRemoveOrder)evt).order, 5, operTime, evt );    // cancel
+        if ( !state.eventQueue.queue.add( evt ) ) {   // priority 8
+            
+            throw new MyException("MatchingEngine.flushNotifications: could not add EvtNotifyMatch to state.eventQueue.queue");
         }
-
-        if ( evt.getClass() == EvtOrderExpiration.class ) {
         
-            removeOrder( ((EvtOrderExpiration)evt).order, 6, operTime, evt );    // expiration
-        }
+        pendingTrades.clear();
+        pendingQuote = null;
+    }
+    
+    protected void releaseRetired() {   // only once the event is fully processed, handlers may still read its order
         
-        WorkingQuote updatedQuote = orderBook.getWorkingQuote( operTime );
+        for ( int i = 0; i < retired.size(); i++ ) {
+            
+            if ( orders != null ) { orders.orderRetired( retired.get(i), state.clock.getCurTime() ); }
+            
+            state.orderPool.release( retired.get(i) );
+        }
         
-        if ( !updatedQuote.equals( currentQuote ) ) {
+        retired.clear();
+    }
 
-            // best bid/ask change: market order, limit order (crossing, at- or inside-spread), cancel or expire limit order
+    public void sendNewOrder( Order o, TimeStamp operTime, Event procEvent ) {
+        
+        if ( validateOrder( o, operTime ) ) {
             
-            Quote q = new Quote( orderBook, updatedQuote );
-
-            if ( !state.eventQueue.queue.add( new EvtNotifyQuoteChange( state.eventQueue, operTime, q ) ) ) { // priority 8
-                
-                throw new MyException("MatchingEngine.dispatch: could not add EvtNotifyQuoteChange to state.eventQueue.queue");
-            }
+            if ( orders != null ) { orders.orderAccepted( o, operTime ); }
 
+            placeNewOrder( o, operTime, procEvent );   // returns tracePrice
+        }
+        else {  // dropped
+            
+            if ( orders != null ) { orders.orderRejected( o, operTime ); }
+            
+            retired.add(o);
         }
     }
 
@@ -111,6 +177,8 @@ public class MatchingEngine {    // manages order flow
     
     public int placeNewOrder( Order o, TimeStamp operTime, Event procEvent ) {
         
+        if ( Consts.DEBUGPOOL ) { OrderPool.checkLive( o, "MatchingEngine.placeNewOrder" ); }
+        
         //----- set time stamps & persist new order
         
         o.orderTime = operTime;
@@ -123,7 +191,7 @@ public class MatchingEngine {    // manages order flow
             
             if ( o.isLimit ) {  // buy limit
 
-                int orderValue = Consts.priceToMoney( o.outstanding * o.limitPrice ); // cut-off digits
+                long orderValue = FixedPoint.value( o.outstanding, o.limitPrice ); // cut-off digits
                 
                 o.agent.portfolio.cash -= orderValue;
                 o.agent.portfolio.blockedCash += orderValue;
@@ -148,15 +216,35 @@ public class MatchingEngine {    // manages order flow
             }
         }
         
-        //----- match order
+        //----- match order, or hold it until the next auction
+        
+        if ( AUCTION ) {
+            
+            holdForAuction( o );
+            return 0;
+        }
         
         int tracePrice = matchOrder( o, operTime, procEvent );
         
         return tracePrice;
     }
 
+    public int modifyOrder( long orderId, TimeStamp operTime, int newLimitPrice, int newOutstanding, Event procEvent ) {
+        
+        Order o = orderBook.getOrder( orderId );
+        
+        if ( o == null ) {
+            
+            return 0;   // no trade; the order was already filled, canceled or expired in the meantime
+        }
+        
+        return modifyOrder( o, operTime, newLimitPrice, newOutstanding, procEvent );
+    }
+
     public int modifyOrder( Order o, TimeStamp operTime, int newLimitPrice, int newOutstanding, Event procEvent ) {
             
+        if ( Consts.DEBUGPOOL ) { OrderPool.checkLive( o, "MatchingEngine.modifyOrder" ); }
+        
         if ( newOutstanding < 1 ) {
             
             throw new MyException("MatchingEngine.modifyOrder: newOutstanding must be strictly positive");
@@ -173,6 +261,11 @@ public class MatchingEngine {    // manages order flow
             
             return 0;   // no trade; the order to be modified was already filled in the meantime
         }
+        
+        if ( newLimitPrice == o.limitPrice && newOutstanding <= o.outstanding ) {
+            
+            return amendDown( o, operTime, newOutstanding );
+        }
 
         // in order to update a TreeSet (comparator fields), first we have to remove the changed element and then update it
 
@@ -183,7 +276,7 @@ public class MatchingEngine {    // manages order flow
                 throw new MyException("MatchingEngine.modifyOrder: could not remove changed order from agent buyList");
             }
             
-            if ( !orderBook.bid.remove(o) ) {
+            if ( !orderBook.remove(o) ) {
                 
                 throw new MyException("MatchingEngine.modifyOrder: could not remove changed order from orderbook bid");
             }
@@ -196,7 +289,7 @@ public class MatchingEngine {    // manages order flow
                 throw new MyException("MatchingEngine.modifyOrder: could not remove changed order from agent sellList");
             }
             
-            if ( !orderBook.ask.remove(o) ) {
+            if ( !orderBook.remove(o) ) {
                 
                 throw new MyException("MatchingEngine.modifyOrder: could not remove changed order from orderbook ask");
             }
@@ -210,17 +303,13 @@ public class MatchingEngine {    // manages order flow
         
         //o.orderTime = operTime;
         o.lastUpdateTime = operTime;
-
-        if ( !( newLimitPrice == o.limitPrice && newOutstanding <= o.outstanding ) ) {
-            
-            o.priorityTime = operTime;  // loose priority
-        }
+        o.priorityTime = operTime;  // loose priority
         
         //----- update portfolio
         
         if ( o.isLimit && o.isBuy ) {  // buy limit
             
-            int changeValue = Consts.priceToMoney( ( newOutstanding * newLimitPrice - o.outstanding * o.limitPrice ) ); // cut-off digits
+            long changeValue = FixedPoint.priceToMoney( FixedPoint.mul( newOutstanding, newLimitPrice ) - FixedPoint.mul( o.outstanding, o.limitPrice ) ); // cut-off digits
             
             o.agent.portfolio.cash -= changeValue;
             o.agent.portfolio.blockedCash += changeValue;
@@ -254,13 +343,315 @@ public class MatchingEngine {    // manages order flow
             }
         }
         
-        //----- match order
+        //----- match order, or hold it until the next auction
+        
+        if ( AUCTION ) {
+            
+            holdForAuction( o );
+            return 0;
+        }
         
         int tracePrice = matchOrder(o, operTime, procEvent);
         
         return tracePrice;
     }
     
+    //----- frequent batch auction
+    
+    public void startAuctions( TimeStamp firstAuction, int interval ) {
+        
+        AUCTION = true;
+        auctionInterval = interval;
+        
+        scheduleAuction( firstAuction );
+    }
+    
+    public void scheduleAuction( TimeStamp auctionTime ) {
+        
+        if ( !state.eventQueue.queue.add( new EvtAuction( state.eventQueue, auctionTime, orderBook.instrument ) ) ) {
+            
+            throw new MyException("MatchingEngine.scheduleAuction: could not add EvtAuction to state.eventQueue.queue");
+        }
+    }
+    
+    private void holdForAuction( Order o ) {   // portfolio is already blocked; the book may stay crossed until the auction
+        
+        if ( !o.isLimit ) {
+            
+            auctionMarketOrders.add(o);
+            return;
+        }
+        
+        if ( !orderBook.add(o) ) {
+            
+            throw new MyException("MatchingEngine.holdForAuction: could not add order to orderBook");
+        }
+
+        if ( o.expirationTime != null ) {
+
+            EvtOrderExpiration orderExpEv = new EvtOrderExpiration( state.eventQueue, o.expirationTime, o );
+
+            o.expiration = state.eventQueue.schedule( orderExpEv );  // retracted through o.expiration if o leaves the book first
+        }
+    }
+    
+    public int runAuction( TimeStamp operTime, Event procEvent ) {  // uncross at the volume maximizing price, returns it ( 0 if no trade )
+        
+        //----- aggregated supply and demand curves
+        
+        int nb = copyAllLevels( true );
+        int na = copyAllLevels( false );
+        
+        long demand = 0, supply = 0;    // demand at the lowest candidate price, supply below it
+        
+        for ( int i = 0; i < auctionMarketOrders.size(); i++ ) {
+            
+            Order o = auctionMarketOrders.get(i);
+            
+            if ( o.isBuy ) { demand += o.outstanding; } else { supply += o.outstanding; }
+        }
+        
+        for ( int i = 0; i < nb; i++ ) {
+            
+            demand += bidSize[i];
+        }
+        
+        //----- one ascending pass over the level prices of both sides: S(p) grows, D(p) shrinks
+        
+        long bestVol = 0, bestImbalance = 0;
+        int clearing = 0;
+        int ia = 0, ib = nb - 1, j = nb - 1;   // asks ascending; bids are best first, so walk them from the end
+        
+        while ( ia < na || ib >= 0 ) {
+            
+            int p = ( ib < 0 || ( ia < na && askPrice[ia] <= bidPrice[ib] ) ) ? askPrice[ia] : bidPrice[ib];
+            
+            while ( ia < na && askPrice[ia] <= p ) { supply += askSize[ia]; ia++; }
+            while ( ib >= 0 && bidPrice[ib] <= p ) { ib--; }
+            while ( j >= 0 && bidPrice[j] < p ) { demand -= bidSize[j]; j--; }
+            
+            long vol = Math.min( demand, supply );
+            long imbalance = Math.abs( demand - supply );
+            
+            if ( vol > 0 && ( vol > bestVol || ( vol == bestVol && ( imbalance < bestImbalance || 
+                    ( imbalance == bestImbalance && lastAuctionPrice > 0 && Math.abs( p - lastAuctionPrice ) < Math.abs( clearing - lastAuctionPrice ) ) ) ) ) ) {
+                
+                bestVol = vol;
+                bestImbalance = imbalance;
+                clearing = p;
+            }
+        }
+        
+        //----- allocation in price-time priority, market orders first
+        
+        int mb = nextAuctionMarketOrder( 0, true );
+        int ms = nextAuctionMarketOrder( 0, false );
+        
+        swept.clear();
+        
+        while ( bestVol > 0 ) {
+            
+            Order buy = ( mb < auctionMarketOrders.size() ) ? auctionMarketOrders.get(mb) : orderBook.bid.first();
+            Order sell = ( ms < auctionMarketOrders.size() ) ? auctionMarketOrders.get(ms) : orderBook.ask.first();
+            
+            int size = (int) Math.min( bestVol, Math.min( buy.outstanding, sell.outstanding ) );
+            
+            settleAuctionFill( buy, sell, clearing, size, operTime );
+            
+            bestVol -= size;
+            
+            if ( buy.outstanding == 0 && !buy.isLimit ) { mb = nextAuctionMarketOrder( mb + 1, true ); }
+            if ( sell.outstanding == 0 && !sell.isLimit ) { ms = nextAuctionMarketOrder( ms + 1, false ); }
+        }
+        
+        state.eventQueue.removeEventsAssociatedWith( swept, procEvent );     // expirations of filled resting orders
+        swept.clear();
+        
+        //----- unexecuted market orders are cancelled
+        
+        for ( int i = 0; i < auctionMarketOrders.size(); i++ ) {
+            
+            Order o = auctionMarketOrders.get(i);
+            
+            if ( o.outstanding == 0 ) {
+                
+                continue;   // filled and retired
+            }
+            
+            if ( o.isBuy ) {
+                
+                if ( !o.agent.portfolio.buyOrders.remove(o) ) {
+
+                    throw new MyException("MatchingEngine.runAuction: could not remove unexecuted order from agent.portfolio.buyOrders");
+                }
+            }
+            else {
+                
+                o.agent.portfolio.blockedInventory -= o.outstanding;
+                o.agent.portfolio.inventory += o.outstanding;
+                
+                if ( !o.agent.portfolio.sellOrders.remove(o) ) {
+
+                    throw new MyException("MatchingEngine.runAuction: could not remove unexecuted order from agent.portfolio.sellOrders");
+                }
+            }
+            
+            retired.add(o);
+        }
+        
+        auctionMarketOrders.clear();
+        
+        if ( clearing > 0 ) {
+            
+            lastAuctionPrice = clearing;
+        }
+        
+        if ( auctionInterval > 0 ) {
+            
+            scheduleAuction( state.clock.addTime( operTime, auctionInterval ) );
+        }
+        
+        return clearing;
+    }
+    
+    private int copyAllLevels( boolean bidSide ) {
+        
+        BookSide side = orderBook.side( bidSide );
+        int max = side.size();  // at most one level per order
+        
+        if ( bidSide && bidPrice.length < max ) {
+            
+            int n = Math.max( max, bidPrice.length << 1 );
+            bidPrice = new int[n]; bidSize = new long[n]; bidCount = new int[n];
+        }
+        
+        if ( !bidSide && askPrice.length < max ) {
+            
+            int n = Math.max( max, askPrice.length << 1 );
+            askPrice = new int[n]; askSize = new long[n]; askCount = new int[n];
+        }
+        
+        return bidSide ? side.copyLevels( bidPrice, bidSize, bidCount, max ) : side.copyLevels( askPrice, askSize, askCount, max );
+    }
+    
+    private int nextAuctionMarketOrder( int from, boolean isBuy ) {    // index of the next open market order of a side, size() if none
+        
+        while ( from < auctionMarketOrders.size() && 
+                ( auctionMarketOrders.get(from).isBuy != isBuy || auctionMarketOrders.get(from).outstanding == 0 ) ) {
+            
+            from++;
+        }
+        
+        return from;
+    }
+    
+    private void settleAuctionFill( Order buy, Order sell, int price, int size, TimeStamp operTime ) {
+        
+        Order aggressor = ( buy.priorityTime.compareTo( sell.priorityTime ) >= 0 ) ? buy : sell;  // the later arrival initiates
+        
+        publishTrade( aggressor, aggressor == buy ? sell : buy, price, size, operTime );
+        
+        //----- buyer portfolio
+        
+        long value = FixedPoint.value( size, price );    // cut-off digits; the buyer pays exactly what the seller receives
+        
+        buy.agent.portfolio.inventory += size;
+        
+        if ( buy.isLimit ) {
+            
+            long blocked = FixedPoint.value( size, buy.limitPrice );
+            
+            // clearing price might be smaller (better) than order limit price -> unblock more cash
+            buy.agent.portfolio.blockedCash -= blocked;
+            buy.agent.portfolio.cash += blocked - value;
+        }
+        else {  // buy market
+            
+            buy.agent.portfolio.cash -= value;
+        }
+        
+        //----- seller portfolio
+        
+        sell.agent.portfolio.blockedInventory -= size;
+        sell.agent.portfolio.cash += value;
+        
+        fillAuctionOrder( buy, size, operTime );
+        fillAuctionOrder( sell, size, operTime );
+    }
+    
+    private void fillAuctionOrder( Order o, int size, TimeStamp operTime ) {
+        
+        o.lastUpdateTime = operTime;
+        
+        if ( o.isLimit ) {
+            
+            orderBook.reduce( o, size );
+        }
+        else {
+            
+            o.outstanding -= size;
+        }
+        
+        if ( o.outstanding > 0 ) {
+            
+            return;     // partial fill
+        }
+        
+        if ( !( o.isBuy ? o.agent.portfolio.buyOrders : o.agent.portfolio.sellOrders ).remove(o) ) {
+            
+            throw new MyException("MatchingEngine.fillAuctionOrder: could not remove filled order #" + o.id + " from agent's order list");
+        }
+        
+        if ( o.isLimit ) {
+            
+            if ( !orderBook.remove(o) ) {
+                
+                throw new MyException("MatchingEngine.fillAuctionOrder: could not remove filled order #" + o.id + " from orderBook");
+            }
+            
+            swept.add(o);
+        }
+        
+        retired.add(o);
+    }
+    
+    private int amendDown( Order o, TimeStamp operTime, int newOutstanding ) {  // same price, smaller size: in place, keeps priority
+        
+        // no sorting field changes and the order cannot become marketable, so the order stays in the book and 
+        // the portfolio lists, and its pending events ( cancel, expiration ) remain valid
+        
+        o.lastUpdateTime = operTime;
+        
+        int reduction = o.outstanding - newOutstanding;
+        
+        if ( reduction == 0 ) {
+            
+            return 0;
+        }
+        
+        //----- release the blocked part of the portfolio
+        
+        if ( o.isLimit && o.isBuy ) {  // buy limit
+            
+            long changeValue = FixedPoint.priceToMoney( FixedPoint.mul( newOutstanding, o.limitPrice ) - FixedPoint.mul( o.outstanding, o.limitPrice ) ); // cut-off digits
+            
+            o.agent.portfolio.cash -= changeValue;
+            o.agent.portfolio.blockedCash += changeValue;
+        }
+
+        if ( !o.isBuy ) {  // sell
+            
+            o.agent.portfolio.inventory += reduction;
+            o.agent.portfolio.blockedInventory -= reduction;
+        }
+        
+        //----- level totals, depth, top of book and deltas
+        
+        orderBook.reduce( o, reduction );
+        
+        return 0;   // no trade
+    }
+    
     private int matchOrder( Order o, TimeStamp operTime, Event procEvent ) {   // clearing mechanism
 
         int tradeSize, tradePrice = 0;
@@ -271,9 +662,15 @@ public class MatchingEngine {    // manages order flow
         if ( o.isBuy ) {
             
             //----- if market order or tradeable limit order
+            
+            if ( SWEEP ) {
+                
+                cp = sweepLevels( o, operTime, procEvent );
+                tradePrice = ( cp == null ) ? 0 : cp.limitPrice;
+            }
 
-            while ( o.outstanding > 0 && !orderBook.ask.isEmpty() && 
-                    ( !o.isLimit || ( orderBook.ask.first().limitPrice <= o.limitPrice ) ) ) 
+            while ( !SWEEP && o.outstanding > 0 && !orderBook.ask.isEmpty() && 
+                    ( !o.isLimit || ( orderBook.getBestAsk() <= o.limitPrice ) ) ) 
             {
                 
                 //----- trade with counterparty
@@ -283,23 +680,14 @@ public class MatchingEngine {    // manages order flow
                 tradePrice = cp.limitPrice;
                 tradeSize = ( o.outstanding < cp.outstanding ) ? o.outstanding : cp.outstanding;
                 
-                Trade t = new Trade( orderBook, tradePrice, tradeSize, operTime, o, cp, true );
-
-                EvtNotifyTrade newTradeEv = new EvtNotifyTrade( state.eventQueue, operTime, t );
-                        
-                if ( !state.eventQueue.queue.add( newTradeEv ) ) {   // priority 8
-                    
-                    throw new MyException("MatchingEngine.matchOrder.buy: could not add EvtNotifyTrade to state.eventQueue.queue");
-                }
-                
-                if ( Consts.DEBUGMODE ) { System.out.println(t); }
+                publishTrade( o, cp, tradePrice, tradeSize, operTime );
                 
                 //----- update (passive) seller portfolio and sell order
 
                 cp.agent.portfolio.blockedInventory -= tradeSize;
-                cp.agent.portfolio.cash += Consts.priceToMoney( tradeSize * tradePrice );  // cut-off digits
+                cp.agent.portfolio.cash += FixedPoint.value( tradeSize, tradePrice );  // cut-off digits
 
-                cp.outstanding -= tradeSize;
+                orderBook.reduce( cp, tradeSize );
                 cp.lastUpdateTime = operTime;
 
                 if ( cp.outstanding == 0 ) {
@@ -315,7 +703,7 @@ public class MatchingEngine {    // manages order flow
                     
                     //----- remove from orderbook
                     
-                    if( orderBook.ask.pollFirst() == null ) {
+                    if( orderBook.pollFirst( false ) == null ) {
                         
                         throw new MyException("MatchingEngine.matchOrder.buy: could not remove filled cp #"+ cp.id +" from orderBook.ask");
                     }
@@ -323,7 +711,8 @@ public class MatchingEngine {    // manages order flow
                     //----- remove also any future related events (remove, etc.)
                     
                     state.eventQueue.removeEventAssociatedWith(cp, procEvent);
-
+                    
+                    retired.add(cp);
                 }
                 else {
                     
@@ -337,15 +726,15 @@ public class MatchingEngine {    // manages order flow
 
                 if ( o.isLimit ) {
                     
-                    o.agent.portfolio.blockedCash -= Consts.priceToMoney( tradeSize * o.limitPrice );
+                    o.agent.portfolio.blockedCash -= FixedPoint.value( tradeSize, o.limitPrice );
                     
                     // trade price might be smaller (better) than order limit price -> unblock more cash
-                    o.agent.portfolio.cash += Consts.priceToMoney( tradeSize * ( o.limitPrice - tradePrice ) );
+                    o.agent.portfolio.cash += FixedPoint.value( tradeSize, o.limitPrice - tradePrice );
 
                 }
                 else {  // buy market
                     
-                    o.agent.portfolio.cash -= Consts.priceToMoney( tradeSize * tradePrice );
+                    o.agent.portfolio.cash -= FixedPoint.value( tradeSize, tradePrice );
                 }
                 
                 if ( o.outstanding == 0 ) {
@@ -356,6 +745,8 @@ public class MatchingEngine {    // manages order flow
                         
                         throw new MyException("MatchingEngine.matchOrder.buy: could not reomve filled order");
                     }
+                    
+                    retired.add(o);
                 }
                 else {
                     
@@ -380,6 +771,8 @@ public class MatchingEngine {    // manages order flow
 
                             throw new MyException("MatchingEngine.matchOrder.buy - outstanding not removed");
                         }
+                        
+                        retired.add(o);
 
                         return tradePrice;
                         
@@ -399,7 +792,7 @@ public class MatchingEngine {    // manages order flow
 
                         //----- adjust portfolio with remaining size at computed limit price
 
-                        int orderValue = Consts.priceToMoney( o.outstanding * o.limitPrice );
+                        long orderValue = FixedPoint.value( o.outstanding, o.limitPrice );
 
                         o.agent.portfolio.cash -= orderValue;
                         o.agent.portfolio.blockedCash += orderValue;
@@ -413,7 +806,7 @@ public class MatchingEngine {    // manages order flow
                     
                     //----- add to orderbook
                     
-                    if ( !orderBook.bid.add(o) ) {
+                    if ( !orderBook.add(o) ) {
                         
                         throw new MyException("MatchingEngine.matchOrder.buy: could not add order to orderBook.bid");
                     }
@@ -424,10 +817,7 @@ public class MatchingEngine {    // manages order flow
 
                         EvtOrderExpiration orderExpEv = new EvtOrderExpiration( state.eventQueue, o.expirationTime, o );
                                 
-                        if ( !state.eventQueue.queue.add( orderExpEv ) ) {
-                            
-                            throw new MyException("MatchingEngine.matchOrder.buy: could not add EvtOrderExpiration to state.eventQueue.queue");
-                        }
+                        o.expiration = state.eventQueue.schedule( orderExpEv );
                     }
                 }
             }
@@ -438,9 +828,15 @@ public class MatchingEngine {    // manages order flow
         //-------------------------------- sell order --------------------------------
         
         else {
+            
+            if ( SWEEP ) {
+                
+                cp = sweepLevels( o, operTime, procEvent );
+                tradePrice = ( cp == null ) ? 0 : cp.limitPrice;
+            }
 
-            while ( o.outstanding > 0 && !orderBook.bid.isEmpty() && 
-                    ( !o.isLimit || ( orderBook.bid.first().limitPrice >= o.limitPrice ) ) ) 
+            while ( !SWEEP && o.outstanding > 0 && !orderBook.bid.isEmpty() && 
+                    ( !o.isLimit || ( orderBook.getBestBid() >= o.limitPrice ) ) ) 
             {
                 
                 //----- trade with counterparty
@@ -450,23 +846,14 @@ public class MatchingEngine {    // manages order flow
                 tradePrice = cp.limitPrice;
                 tradeSize = ( o.outstanding < cp.outstanding ) ? o.outstanding : cp.outstanding;
                 
-                Trade t = new Trade( orderBook, tradePrice, tradeSize, operTime, cp, o, false );
-
-                EvtNotifyTrade newTradeEv = new EvtNotifyTrade( state.eventQueue, operTime, t );
-                        
-                if ( !state.eventQueue.queue.add( newTradeEv ) ) {   // priority 8
-                    
-                    throw new MyException("MatchingEngine.matchOrder.sell: could not add EvtNotifyTrade to state.eventQueue.queue");
-                }
-                
-                if ( Consts.DEBUGMODE ) { System.out.println(t); }
+                publishTrade( o, cp, tradePrice, tradeSize, operTime );
 
                 //----- update sell order and seller portfolio
                 
                 o.outstanding -= tradeSize;
                 
                 o.agent.portfolio.blockedInventory -= tradeSize;
-                o.agent.portfolio.cash += Consts.priceToMoney( tradeSize * tradePrice );
+                o.agent.portfolio.cash += FixedPoint.value( tradeSize, tradePrice );
 
                 if ( o.outstanding == 0 ) {
                     
@@ -477,6 +864,7 @@ public class MatchingEngine {    // manages order flow
                         throw new MyException("MatchingEngine.matchOrder.sell: could not remove filled order from agent.portfolio.sellOrders");
                     }
                     
+                    retired.add(o);
                 }
                 else {
                     
@@ -486,9 +874,9 @@ public class MatchingEngine {    // manages order flow
                 //-------- update (passive) buyer portfolio and buy order
                 
                 cp.agent.portfolio.inventory += tradeSize;
-                cp.agent.portfolio.blockedCash -= Consts.priceToMoney( tradeSize * tradePrice );
+                cp.agent.portfolio.blockedCash -= FixedPoint.value( tradeSize, tradePrice );
 
-                cp.outstanding -= tradeSize;
+                orderBook.reduce( cp, tradeSize );
                 cp.lastUpdateTime = operTime;
 
                 if ( cp.outstanding == 0 ) {
@@ -504,7 +892,7 @@ public class MatchingEngine {    // manages order flow
                     
                     //----- remove from orderbook
                     
-                    if( orderBook.bid.pollFirst() == null ) {
+                    if( orderBook.pollFirst( true ) == null ) {
                         
                         throw new MyException("MatchingEngine.matchOrder.sell: could not remove filled cp from orderBook.bid");
                     }
@@ -512,7 +900,8 @@ public class MatchingEngine {    // manages order flow
                     //----- remove also any future related events (remove, etc.)
                     
                     state.eventQueue.removeEventAssociatedWith(cp, procEvent);
-
+                    
+                    retired.add(cp);
                 }
                 else {
                     
@@ -544,6 +933,8 @@ public class MatchingEngine {    // manages order flow
                         o.agent.portfolio.inventory += o.outstanding;
                         
                         //----- persist order and portfolio changes
+                        
+                        retired.add(o);
 
                         return tradePrice;
                         
@@ -570,7 +961,7 @@ public class MatchingEngine {    // manages order flow
 
                     //----- add to order book
                     
-                    if ( !orderBook.ask.add(o) ) {
+                    if ( !orderBook.add(o) ) {
                         
                         throw new MyException("MatchingEngine.matchOrder.sell: could not add order to orderBook.ask");
                     }
@@ -581,10 +972,7 @@ public class MatchingEngine {    // manages order flow
 
                         EvtOrderExpiration orderExpEv = new EvtOrderExpiration( state.eventQueue, o.expirationTime, o );
                         
-                        if ( !state.eventQueue.queue.add( orderExpEv ) ) {
-                            
-                            throw new MyException("MatchingEngine.matchOrder.sell: could not add EvtOrderExpiration to state.eventQueue.queue");
-                        }
+                        o.expiration = state.eventQueue.schedule( orderExpEv );
                     }
                 }
             }
@@ -593,9 +981,223 @@ public class MatchingEngine {    // manages order flow
         }
     }
 
+    private Order sweepLevels( Order o, TimeStamp operTime, Event procEvent ) {    // returns the last counterparty, null if none
+        
+        BookSide book = orderBook.side( !o.isBuy );    // the opposite side
+        Order cp = null;
+        
+        swept.clear();
+        
+        while ( o.outstanding > 0 && !book.isEmpty() && 
+                ( !o.isLimit || ( o.isBuy ? orderBook.getBestAsk() <= o.limitPrice : orderBook.getBestBid() >= o.limitPrice ) ) ) 
+        {
+            
+            Order first = book.first();
+            int levelPrice = first.limitPrice;
+            int levelSize = 0;  // executed at this level
+            
+            long cashChange = 0;    // aggressor, summed per fill so the result matches the per-fill path
+            long blockedCashChange = 0;
+            
+            //----- fill the level in time priority
+            
+            while ( levelSize < o.outstanding && !book.isEmpty() && book.first().limitPrice == levelPrice ) {
+                
+                cp = book.first();
+                
+                int tradeSize = ( o.outstanding - levelSize < cp.outstanding ) ? o.outstanding - levelSize : cp.outstanding;
+                
+                if ( !LEVELPRINTS ) {
+                    
+                    publishTrade( o, cp, levelPrice, tradeSize, operTime );
+                }
+                else {
+                    
+                    addLevelFill( cp, tradeSize );
+                }
+                
+                //----- update (passive) counterparty portfolio and order
+                
+                if ( o.isBuy ) {
+                    
+                    cp.agent.portfolio.blockedInventory -= tradeSize;
+                    cp.agent.portfolio.cash += FixedPoint.value( tradeSize, levelPrice );
+                }
+                else {
+                    
+                    cp.agent.portfolio.inventory += tradeSize;
+                    cp.agent.portfolio.blockedCash -= FixedPoint.value( tradeSize, levelPrice );
+                }
+                
+                if ( o.isBuy ) {
+                    
+                    if ( o.isLimit ) {
+                        
+                        blockedCashChange -= FixedPoint.value( tradeSize, o.limitPrice );
+                        cashChange += FixedPoint.value( tradeSize, o.limitPrice - levelPrice );
+                    }
+                    else {
+                        
+                        cashChange -= FixedPoint.value( tradeSize, levelPrice );
+                    }
+                }
+                else {
+                    
+                    cashChange += FixedPoint.value( tradeSize, levelPrice );
+                }
+                
+                orderBook.reduce( cp, tradeSize );
+                cp.lastUpdateTime = operTime;
+                
+                if ( cp.outstanding == 0 ) {
+                    
+                    if ( !( cp.isBuy ? cp.agent.portfolio.buyOrders : cp.agent.portfolio.sellOrders ).remove(cp) ) {
+                        
+                        throw new MyException("MatchingEngine.sweepLevels: could not remove filled cp #"+ cp.id +" from the agent's order list");
+                    }
+                    
+                    if ( orderBook.pollFirst( cp.isBuy ) != cp ) {
+                        
+                        throw new MyException("MatchingEngine.sweepLevels: could not remove filled cp #"+ cp.id +" from the order book");
+                    }
+                    
+                    swept.add(cp);
+                    retired.add(cp);
+                }
+                
+                levelSize += tradeSize;
+            }
+            
+            if ( LEVELPRINTS ) {    // one print for the level, carrying every passive fill
+                
+                publishTrade( o, first, levelPrice, levelSize, operTime );
+            }
+            
+            //----- update aggressive order and portfolio, once per level
+            
+            o.outstanding -= levelSize;
+            o.agent.portfolio.cash += cashChange;
+            o.agent.portfolio.blockedCash += blockedCashChange;
+            
+            if ( o.isBuy ) {
+                
+                o.agent.portfolio.inventory += levelSize;
+            }
+            else {
+                
+                o.agent.portfolio.blockedInventory -= levelSize;
+            }
+            
+            if ( o.outstanding == 0 ) {
+                
+                if ( !( o.isBuy ? o.agent.portfolio.buyOrders : o.agent.portfolio.sellOrders ).remove(o) ) {
+                    
+                    throw new MyException("MatchingEngine.sweepLevels: could not remove filled order from the agent's order list");
+                }
+                
+                retired.add(o);
+            }
+        }
+        
+        //----- remove any future events of the filled counterparties, in one pass
+        
+        state.eventQueue.removeEventsAssociatedWith( swept, procEvent );
+        swept.clear();
+        
+        return cp;
+    }
+    
+    private void addLevelFill( Order cp, int size ) {
+        
+        if ( levelFills == fillSizes.length ) {
+            
+            fillAgents = Arrays.copyOf( fillAgents, levelFills << 1 );
+            fillOrderIds = Arrays.copyOf( fillOrderIds, levelFills << 1 );
+            fillSizes = Arrays.copyOf( fillSizes, levelFills << 1 );
+        }
+        
+        fillAgents[levelFills] = cp.agent;
+        fillOrderIds[levelFills] = cp.getId();
+        fillSizes[levelFills] = size;
+        levelFills++;
+    }
+    
+    private void publishTrade( Order o, Order cp, int price, int size, TimeStamp operTime ) {   // o is the aggressor; a level print if fills were collected
+        
+        Trade t;
+        
+        if ( marketData != null ) {
+            
+            t = tradeRecord;
+            
+            if ( o.isBuy ) { t.set( orderBook, price, size, operTime, o, cp, true ); } else { t.set( orderBook, price, size, operTime, cp, o, false ); }
+            
+            if ( levelFills > 0 ) { t.setFills( fillAgents, fillOrderIds, fillSizes, levelFills ); levelFills = 0; }
+            
+            marketData.onTrade(t);
+        }
+        else {
+            
+            t = o.isBuy ? new Trade( orderBook, price, size, operTime, o, cp, true ) : new Trade( orderBook, price, size, operTime, cp, o, false );
+            
+            if ( levelFills > 0 ) { t.setFills( fillAgents, fillOrderIds, fillSizes, levelFills ); levelFills = 0; }
+            
+            if ( CONFLATE ) {
+                
+                pendingTrades.add(t);
+            }
+            else if ( !state.eventQueue.queue.add( new EvtNotifyTrade( state.eventQueue, operTime, t ) ) ) {   // priority 8
+                
+                throw new MyException("MatchingEngine.publishTrade: could not add EvtNotifyTrade to state.eventQueue.queue");
+            }
+        }
+        
+        if ( Consts.DEBUGMODE ) { System.out.println(t); }
+    }
+    
+    protected void publishQuote( TimeStamp operTime ) {     // current top of book
+        
+        if ( marketData != null ) {
+            
+            quoteRecord.set( orderBook, operTime, orderBook.getBestBid(), orderBook.getBestBidVol(), 
+                    orderBook.getBestAsk(), orderBook.getBestAskVol() );
+            
+            marketData.onQuote( quoteRecord );
+            return;
+        }
+        
+        Quote q = new Quote( orderBook, operTime, orderBook.getBestBid(), orderBook.getBestBidVol(), 
+                orderBook.getBestAsk(), orderBook.getBestAskVol() );
+        
+        if ( CONFLATE ) {
+            
+            pendingQuote = q;
+            return;
+        }
+
+        if ( !state.eventQueue.queue.add( new EvtNotifyQuoteChange( state.eventQueue, operTime, q ) ) ) { // priority 8
+            
+            throw new MyException("MatchingEngine.publishQuote: could not add EvtNotifyQuoteChange to state.eventQueue.queue");
+        }
+    }
+
     // changeType: 5 - cancel, 6 - expiration
+    public boolean removeOrder( long orderId, int changeType, TimeStamp operTime, Event procEvent ) {
+        
+        Order o = orderBook.getOrder( orderId );
+        
+        if ( o == null ) {
+            
+            return false;   // the order was already filled, canceled or expired in the meantime
+        }
+        
+        return removeOrder( o, changeType, operTime, procEvent );
+    }
+
     public boolean removeOrder( Order o, int changeType, TimeStamp operTime, Event procEvent ) {
         
+        if ( Consts.DEBUGPOOL ) { OrderPool.checkLive( o, "MatchingEngine.removeOrder" ); }
+        
         o.lastUpdateTime = operTime;
         
         if ( o.isBuy ) {
@@ -605,12 +1207,12 @@ public class MatchingEngine {    // manages order flow
                 throw new MyException("MatchingEngine.removeOrder: could not remove order from agent.portfolio.buyOrders");
             }
             
-            if ( !orderBook.bid.remove(o) ) {
+            if ( !orderBook.remove(o) ) {
                 
                 throw new MyException("MatchingEngine.removeOrder: could not remove order from orderBook.bid");
             }
 
-            int orderValue = Consts.priceToMoney( o.outstanding * o.limitPrice );
+            long orderValue = FixedPoint.value( o.outstanding, o.limitPrice );
 
             o.agent.portfolio.cash += orderValue;
             o.agent.portfolio.blockedCash -= orderValue;
@@ -623,7 +1225,7 @@ public class MatchingEngine {    // manages order flow
                 throw new MyException("MatchingEngine.removeOrder: O#"+ o.id + " not removed from agent.portfolio.sellOrders");
             }
             
-            if ( !orderBook.ask.remove(o) ) {
+            if ( !orderBook.remove(o) ) {
                 
                 throw new MyException("MatchingEngine.removeOrder: could not remove order from orderBook.ask");
             }
@@ -638,6 +1240,8 @@ public class MatchingEngine {    // manages order flow
         
         state.eventQueue.removeEventAssociatedWith(o, procEvent);
         
+        retired.add(o);
+        
         return true;
     }
 }
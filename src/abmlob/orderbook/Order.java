@@ -14,6 +14,7 @@
 package abmlob.orderbook;
 
 import abmlob.agents.*;
+import abmlob.events.Event;
 import ccloop.*;
 
 public class Order extends OrderBookArtifact {
@@ -30,6 +31,15 @@ public class Order extends OrderBookArtifact {
     public int limitPrice;
     public TimeStamp expirationTime;
     
+    public Event expiration;       // pending EvtOrderExpiration, scheduled by the matching engine
+    public Event cancelRequest;    // pending EvtRemoveOrder of the owner ( cancel with latency ), null if none
+    
+    PriceLevel level;   // only used by PriceLevelBookSide
+    Order prevInLevel;
+    Order nextInLevel;
+    
+    boolean released;   // returned to an OrderPool
+    
     public Order( OrderBook ob, Agent agent, boolean isBuy, boolean isLimit, int size, int price, TimeStamp expirationTime ) {
 
         super( ob );    // order id
@@ -43,11 +53,42 @@ public class Order extends OrderBookArtifact {
         this.expirationTime = expirationTime;
     }
     
+    void init( OrderBook ob, Agent agent, boolean isBuy, boolean isLimit, int size, int price, TimeStamp expirationTime ) {    // reuse, see OrderPool
+        
+        newId( ob );
+        
+        this.agent = agent;
+        
+        this.orderTime = null;
+        this.lastUpdateTime = null;
+        this.priorityTime = null;
+        
+        this.isBuy = isBuy;
+        this.isLimit = isLimit;
+        this.outstanding = size;
+        this.limitPrice = price;
+        this.expirationTime = expirationTime;
+        
+        this.expiration = null;
+        this.cancelRequest = null;
+        
+        this.level = null;
+        this.prevInLevel = null;
+        this.nextInLevel = null;
+        this.released = false;
+    }
+    
+    public boolean isReleased() {
+        
+        return released;
+    }
+    
     public Order ( Order source ) {
         
         super();
         
         this.id = source.id;
+        this.instrument = source.instrument;
         this.agent = null;      // !!!!!!!
         
         this.orderTime = source.orderTime;
@@ -71,7 +112,7 @@ public class Order extends OrderBookArtifact {
            return false;
         }
         
-        return this.id == ((Order)obj).id;
+        return this.id == ((Order)obj).id && this.instrument == ((Order)obj).instrument;
     }
 
     @Override
@@ -89,7 +130,7 @@ public class Order extends OrderBookArtifact {
         StringBuffer buf = new StringBuffer();
 
         buf.append("Order(#").append( id );
-        buf.append(",A#").append( agent.id );
+        buf.append(",A#").append( agent == null ? "-" : String.valueOf( agent.id ) );   // copies are detached from the agent
         buf.append(" ").append( isBuy ? "buy" : "sell" );
         buf.append(" ").append( isLimit ? "limit" : "market" );
         buf.append(" ").append( outstanding );
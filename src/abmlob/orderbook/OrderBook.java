@@ -14,132 +14,563 @@
 package abmlob.orderbook;
 
 import ccloop.*;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.Arrays;
 
-public class OrderBook {
+public class OrderBook {    // snapshot() is an eager L2 copy without copy-on-write, OrderBook( OrderBook ) an order-level one
     
     public long noOfArtifacts;
     
-    public TreeSet<Order> bid;
-    public TreeSet<Order> ask;
+    public int instrument;  // 0 unless registered through MarketState.addInstrument
+    
+    public int bookType;    // 0 - TreeSet of orders, 1 - price levels with FIFO queues
+    
+    public BookSide bid;
+    public BookSide ask;
     
     public int decCorr;    // decimalCorrection
     
+    private int bestBid, bestBidVol;    // top of book, 0 if the side is empty
+    private int bestAsk, bestAskVol;
+    private long topVersion;    // incremented whenever the top of book is touched
+    
+    private long bidDepth;      // total outstanding volume per side
+    private long askDepth;
+    
+    private OrderIndex index;   // resting orders by id
+    
+    private DepthView bidView;  // top K levels per side
+    private DepthView askView;
+    
+    private DepthIndex bidIndex;    // cumulative depth over price ticks per side
+    private DepthIndex askIndex;
+    
+    private BookDeltaListener deltas;  // null if nobody subscribed
+    
+    private int[] scratchPrice = new int[64];   // reused by snapshot()
+    private long[] scratchSize = new long[64];
+    private int[] scratchCount = new int[64];
+    
     public OrderBook() {
 
+        this( Consts.BOOKTYPE );
+    }
+
+    public OrderBook( int bookType ) {
+
         this.noOfArtifacts = 0;
         
-        this.bid = new TreeSet<>(new OrderCompByBuyPriority());
-        this.ask = new TreeSet<>(new OrderCompBySellPriority());
+        this.bookType = bookType;
+        this.bid = newBookSide( bookType, true );
+        this.ask = newBookSide( bookType, false );
+        this.index = new OrderIndex();
+        this.bidIndex = new DepthIndex( true );
+        this.askIndex = new DepthIndex( false );
+        
+        setDepthLevels( 10 );
         
         decCorr = ( Consts.PRICEDIGITS - Consts.CASHDIGITS ) > 0 ? ( Consts.PRICEDIGITS - Consts.CASHDIGITS ) : 0;
     }
 
-    public OrderBook( OrderBook source ) {
+    public OrderBook( OrderBook source ) {     // deep copy: detached orders ( see Order( Order ) ), O( orders )
 
-        this.noOfArtifacts = source.noOfArtifacts;
-        
-        this.bid = new TreeSet<>(new OrderCompByBuyPriority());        
-        this.ask = new TreeSet<>(new OrderCompBySellPriority());
+        this( source.bookType );
         
         this.decCorr = source.decCorr;
+        this.instrument = source.instrument;
+        
+        setDepthLevels( source.bidView.maxLevels );
+        
+        for ( int i = 0; i < 2; i++ ) {
+            
+            for ( Order o : source.side( i == 0 ) ) {
+                
+                if ( !add( new Order(o) ) ) {
+                    
+                    throw new MyException("OrderBook: could not copy order #" + o.id);
+                }
+            }
+        }
+        
+        this.noOfArtifacts = source.noOfArtifacts;
+        this.topVersion = source.topVersion;
     }
 
-    // order book add function, which test that no buy order is send to ask or conversely
-    
-    public WorkingQuote getWorkingQuote( TimeStamp t ) {
+    private static BookSide newBookSide( int bookType, boolean bidSide ) {
         
-        int bestBid = 0, bestBidVol = 0,
-            bestAsk = 0, bestAskVol = 0;
-
-        Iterator<Order> bidIterator = this.bid.iterator();
-
-        if ( bidIterator.hasNext() ) {
-
-            Order b = bidIterator.next();
-            bestBid = b.limitPrice;
-            bestBidVol += b.outstanding;
+        switch ( bookType ) {
+            
+            case 0:
+                
+                return new TreeSetBookSide( bidSide ? new OrderCompByBuyPriority() : new OrderCompBySellPriority() );
+                
+            case 1:
+                
+                return new PriceLevelBookSide( bidSide );
+                
+            default:
+                
+                throw new MyException("OrderBook: unknown book type " + bookType);
         }
+    }
 
-        while ( bidIterator.hasNext() ) {
-
-            Order o = bidIterator.next();
+    //----- book mutations ( the matching engine changes resting orders only through these )
+    
+    public BookSide side( boolean bidSide ) {
+        
+        return bidSide ? bid : ask;
+    }
+    
+    public boolean add( Order o ) {
+        
+        if ( !side( o.isBuy ).add(o) ) {
+            
+            return false;
+        }
+        
+        if ( o.isBuy ) { bidDepth += o.outstanding; } else { askDepth += o.outstanding; }
+        
+        index.put( o.id, o );
+        depthView( o.isBuy ).add( o.limitPrice, o.outstanding );
+        depthIndex( o.isBuy ).update( o.limitPrice, o.outstanding );
+        
+        if ( deltas != null ) {
+            
+            deltas.orderAdded( o.id, o.isBuy, o.limitPrice, o.outstanding );
+            deltas.levelChanged( o.isBuy, o.limitPrice, depthIndex( o.isBuy ).volumeBetween( o.limitPrice, o.limitPrice ) );
+        }
+        
+        //----- top of book
+        
+        if ( o.isBuy ) {
             
-            if ( o.limitPrice == bestBid ) {
+            if ( bestBid == 0 || o.limitPrice > bestBid ) {
                 
-                bestBidVol += o.outstanding;    
+                bestBid = o.limitPrice;
+                bestBidVol = o.outstanding;
+                topVersion++;
             }
-            else {
-
-                break;
+            else if ( o.limitPrice == bestBid ) {
+                
+                bestBidVol += o.outstanding;
+                topVersion++;
             }
         }
+        else {
+            
+            if ( bestAsk == 0 || o.limitPrice < bestAsk ) {
+                
+                bestAsk = o.limitPrice;
+                bestAskVol = o.outstanding;
+                topVersion++;
+            }
+            else if ( o.limitPrice == bestAsk ) {
+                
+                bestAskVol += o.outstanding;
+                topVersion++;
+            }
+        }
+        
+        return true;
+    }
 
-        Iterator<Order> askIterator = this.ask.iterator();
-
-        if ( askIterator.hasNext() ) {
-
-            Order a = askIterator.next();
-            bestAsk = a.limitPrice;
-            bestAskVol += a.outstanding;
+    public boolean remove( Order o ) {
+        
+        if ( !side( o.isBuy ).remove(o) ) {
+            
+            return false;
         }
+        
+        if ( o.isBuy ) { bidDepth -= o.outstanding; } else { askDepth -= o.outstanding; }
+        
+        index.remove( o.id );
+        depthView( o.isBuy ).remove( o.limitPrice, o.outstanding );
+        depthIndex( o.isBuy ).update( o.limitPrice, -o.outstanding );
+        publishRemove(o);
+        removeFromTop(o);
+        
+        return true;
+    }
 
-        while ( askIterator.hasNext() ) {
+    public Order pollFirst( boolean bidSide ) {
+        
+        Order o = side( bidSide ).pollFirst();
+        
+        if ( o != null ) {
+            
+            if ( o.isBuy ) { bidDepth -= o.outstanding; } else { askDepth -= o.outstanding; }
+            
+            index.remove( o.id );
+            depthView( o.isBuy ).remove( o.limitPrice, o.outstanding );
+            depthIndex( o.isBuy ).update( o.limitPrice, -o.outstanding );
+            publishRemove(o);
+            removeFromTop(o);
+        }
+        
+        return o;
+    }
 
-            Order o = askIterator.next();
+    public void reduce( Order o, int size ) {   // partial or full fill, or size-down amend, of a resting order
+        
+        side( o.isBuy ).reduce( o, size );
+        
+        if ( o.isBuy ) { bidDepth -= size; } else { askDepth -= size; }
+        
+        depthView( o.isBuy ).reduce( o.limitPrice, size );
+        depthIndex( o.isBuy ).update( o.limitPrice, -size );
+        
+        if ( deltas != null ) {
             
-            if ( o.limitPrice == bestAsk ) {
+            deltas.orderReduced( o.id, o.isBuy, o.limitPrice, size );
+            deltas.levelChanged( o.isBuy, o.limitPrice, depthIndex( o.isBuy ).volumeBetween( o.limitPrice, o.limitPrice ) );
+        }
+        
+        if ( o.isBuy && o.limitPrice == bestBid ) {
+            
+            bestBidVol -= size;
+            topVersion++;
+        }
+        
+        if ( !o.isBuy && o.limitPrice == bestAsk ) {
+            
+            bestAskVol -= size;
+            topVersion++;
+        }
+    }
+    
+    private void publishRemove( Order o ) {
+        
+        if ( deltas != null ) {
+            
+            deltas.orderRemoved( o.id, o.isBuy, o.limitPrice, o.outstanding );
+            
+            if ( o.outstanding > 0 ) {  // a filled order left the level total unchanged
                 
-                bestAskVol += o.outstanding;    
+                deltas.levelChanged( o.isBuy, o.limitPrice, depthIndex( o.isBuy ).volumeBetween( o.limitPrice, o.limitPrice ) );
             }
-            else {
-
-                break;
+        }
+    }
+    
+    public BookDeltaListener getDeltaListener() { return deltas; }
+    
+    public void setDeltaListener( BookDeltaListener listener ) {    // null to unsubscribe
+        
+        deltas = listener;
+    }
+    
+    private void removeFromTop( Order o ) {
+        
+        if ( o.isBuy ) {
+            
+            if ( o.limitPrice == bestBid && o.outstanding > 0 ) {
+                
+                bestBidVol -= o.outstanding;
+                topVersion++;
+            }
+            
+            if ( bestBidVol == 0 ) {    // best level exhausted (a filled order is reduced before it is removed)
+                
+                refreshTop( true );
+            }
+        }
+        else {
+            
+            if ( o.limitPrice == bestAsk && o.outstanding > 0 ) {
+                
+                bestAskVol -= o.outstanding;
+                topVersion++;
+            }
+            
+            if ( bestAskVol == 0 ) {
+                
+                refreshTop( false );
             }
         }
-
-        return new WorkingQuote(t, bestBid, bestBidVol, bestAsk, bestAskVol);
     }
-
-    public WorkingQuote getBidAskSpread( TimeStamp t ) {
+    
+    private void refreshTop( boolean bidSide ) {
+        
+        Order first = side( bidSide ).first();
         
-        int bestBid = 0, bestAsk = 0;
+        int price = ( first == null ) ? 0 : first.limitPrice;
+        int vol = ( first == null ) ? 0 : (int) side( bidSide ).firstLevelSize();
 
-        if ( !bid.isEmpty() ) {
+        if ( bidSide ) {
+            
+            bestBid = price;
+            bestBidVol = vol;
+        }
+        else {
+            
+            bestAsk = price;
+            bestAskVol = vol;
+        }
+        
+        topVersion++;
+    }
 
-            bestBid = bid.first().limitPrice;
+    //----- top K levels ( L2 )
+    
+    public void setDepthLevels( int maxLevels ) {
+        
+        if ( maxLevels < 1 ) {
+            
+            throw new MyException("OrderBook.setDepthLevels: at least one level");
+        }
+        
+        bidView = new DepthView( true, maxLevels );
+        askView = new DepthView( false, maxLevels );
+        
+        bidView.dirty = askView.dirty = true;  // filled from the book on first read
+    }
+    
+    private DepthView depthView( boolean bidSide ) {
+        
+        return bidSide ? bidView : askView;
+    }
+    
+    public DepthView getDepthView( boolean bidSide ) {  // read-only, valid until the next book mutation
+        
+        DepthView view = depthView( bidSide );
+        
+        if ( view.dirty ) {
+            
+            view.reload( side( bidSide ) );
         }
+        
+        return view;
+    }
+    
+    public Order getOrder( long id ) {  // resting order by id, null if filled, cancelled, expired or unknown
+        
+        return index.get( id );
+    }
 
-        if ( !ask.isEmpty() ) {
+    //----- top of book ( maintained on every mutation, no allocation )
+    
+    public int getBestBid() { return bestBid; }
+    
+    public int getBestAsk() { return bestAsk; }
+    
+    public int getBestBidVol() { return bestBidVol; }
+    
+    public int getBestAskVol() { return bestAskVol; }
 
-            bestAsk = ask.first().limitPrice;
-        }
+    public long getTopVersion() { return topVersion; }
+    
+    public boolean isTopChangedSince( long version ) {  // conservative: a change that was reverted still counts
+        
+        return topVersion != version;
+    }
+    
+    public boolean isTopEqualTo( QuoteInterface q ) {
+        
+        return bestBid == q.getBestBid() && bestBidVol == q.getBestBidVol() &&
+                bestAsk == q.getBestAsk() && bestAskVol == q.getBestAskVol();
+    }
+    
+    public void copyTopTo( WorkingQuote q ) {
+        
+        q.bestBid = bestBid;
+        q.bestBidVol = bestBidVol;
+        q.bestAsk = bestAsk;
+        q.bestAskVol = bestAskVol;
+    }
+    
+    public WorkingQuote getWorkingQuote( TimeStamp t ) {
+        
+        return new WorkingQuote(t, bestBid, bestBidVol, bestAsk, bestAskVol);
+    }
 
+    public WorkingQuote getBidAskSpread( TimeStamp t ) {
+        
         return new WorkingQuote(t, bestBid, 0, bestAsk, 0);
     }
 
-    public int getBookDepth( boolean bid ) {
+    //----- snapshots
+    
+    // L2 only: no order ids, agents or queue positions. Each call copies every level of both sides, 
+    // nothing is shared with the live book, so the cost is paid on every snapshot, not on later updates
+    
+    public OrderBookSnapshot snapshot( TimeStamp t ) {  // immutable L2 copy, O( levels ); safe to hand to other threads
+        
+        int[] bidPrice, askPrice, bidCount, askCount;
+        long[] bidSize, askSize;
+        
+        int n = copySide( true );
+        
+        bidPrice = Arrays.copyOf( scratchPrice, n );
+        bidSize = Arrays.copyOf( scratchSize, n );
+        bidCount = Arrays.copyOf( scratchCount, n );
+        
+        n = copySide( false );
+        
+        askPrice = Arrays.copyOf( scratchPrice, n );
+        askSize = Arrays.copyOf( scratchSize, n );
+        askCount = Arrays.copyOf( scratchCount, n );
+        
+        return new OrderBookSnapshot( t, topVersion, bestBid, bestBidVol, bestAsk, bestAskVol, bidDepth, askDepth, 
+                bidPrice, bidSize, bidCount, askPrice, askSize, askCount );
+    }
+    
+    private int copySide( boolean bidSide ) {
         
-        int depth = 0;
+        BookSide bs = side( bidSide );
         
-        Iterator<Order> bookIterator;
+        int n = bs.copyLevels( scratchPrice, scratchSize, scratchCount, scratchPrice.length );
         
-        if ( bid ) {
+        if ( n == scratchPrice.length && n < bs.size() ) {   // possibly more levels than scratch space
             
-            bookIterator = this.bid.iterator();
+            scratchPrice = new int[bs.size()];
+            scratchSize = new long[bs.size()];
+            scratchCount = new int[bs.size()];
+            
+            n = bs.copyLevels( scratchPrice, scratchSize, scratchCount, scratchPrice.length );
         }
-        else {
+        
+        return n;
+    }
+    
+    //----- running depth totals
+    
+    public long getBookDepth( boolean bid ) {
+        
+        return bid ? bidDepth : askDepth;
+    }
+    
+    public int getBookOrderCount( boolean bid ) {
+        
+        return side( bid ).size();
+    }
+    
+    //----- cumulative depth queries ( bidSide is the side being swept, i.e. a market buy sweeps the ask side )
+    
+    private DepthIndex depthIndex( boolean bidSide ) {
+        
+        return bidSide ? bidIndex : askIndex;
+    }
+    
+    public int getSweepPrice( boolean bidSide, long size ) {    // worst price touched by taking size shares, 0 if the side is too thin
+        
+        return depthIndex( bidSide ).sweepPrice( size );
+    }
+    
+    public boolean isSweepOnOrderBoundary( boolean bidSide, long size ) {  // true if taking size shares consumes a whole number of orders
+        
+        int last = getSweepPrice( bidSide, size );
+        
+        if ( last == 0 ) {
             
-            bookIterator = this.ask.iterator();
+            return false;
         }
         
-        while ( bookIterator.hasNext() ) {
-
-            depth += bookIterator.next().outstanding;
+        return side( bidSide ).endsOnOrder( last, size - depthIndex( bidSide ).volumeAhead( last ) );
+    }
+    
+    public double getSweepVwap( boolean bidSide, long size ) {  // average price of taking size shares, 0 if the side is too thin
+        
+        return depthIndex( bidSide ).sweepVwap( size );
+    }
+    
+    public long getVolumeWithin( boolean bidSide, int ticks ) { // resting volume from the touch up to ticks behind it
+        
+        return depthIndex( bidSide ).volumeWithin( bidSide ? bestBid : bestAsk, ticks );
+    }
+    
+    public void checkConsistency() {    // debug: recompute the incremental state from the resting orders
+        
+        for ( int i = 0; i < 2; i++ ) {
+            
+            boolean bidSide = ( i == 0 );
+            
+            long depth = 0, firstLevel = 0;
+            int count = 0, firstPrice = 0;
+            
+            for ( Order o : side( bidSide ) ) {
+                
+                if ( o.outstanding < 1 ) {
+                    
+                    throw new MyException("OrderBook.checkConsistency: resting order #" + o.id + " has no outstanding");
+                }
+                
+                if ( count == 0 ) {
+                    
+                    firstPrice = o.limitPrice;
+                }
+                
+                if ( o.limitPrice == firstPrice ) {
+                    
+                    firstLevel += o.outstanding;
+                }
+                
+                if ( index.get( o.id ) != o ) {
+                    
+                    throw new MyException("OrderBook.checkConsistency: resting order #" + o.id + " missing from the id index");
+                }
+                
+                depth += o.outstanding;
+                count++;
+            }
+            
+            if ( depth != getBookDepth( bidSide ) || count != getBookOrderCount( bidSide ) ) {
+                
+                throw new MyException("OrderBook.checkConsistency: " + ( bidSide ? "bid" : "ask" ) + " depth " + getBookDepth( bidSide ) + 
+                        "/" + getBookOrderCount( bidSide ) + " ord., recomputed " + depth + "/" + count + " ord.");
+            }
+            
+            if ( firstPrice != ( bidSide ? bestBid : bestAsk ) || firstLevel != ( bidSide ? bestBidVol : bestAskVol ) 
+                    || firstLevel != side( bidSide ).firstLevelSize() ) {
+                
+                throw new MyException("OrderBook.checkConsistency: " + ( bidSide ? "bid" : "ask" ) + " top of book out of sync");
+            }
+        }
+        
+        if ( index.size() != bid.size() + ask.size() ) {
+            
+            throw new MyException("OrderBook.checkConsistency: id index holds " + index.size() + " orders");
         }
         
-        return depth;
+        for ( int i = 0; i < 2; i++ ) {
+            
+            DepthView view = getDepthView( i == 0 );
+            DepthView check = new DepthView( i == 0, view.maxLevels );
+            
+            check.reload( side( i == 0 ) );
+            
+            boolean same = ( view.levels == check.levels && ( check.complete || !view.complete ) );
+            
+            for ( int j = 0; same && j < view.levels; j++ ) {
+                
+                same = ( view.price[j] == check.price[j] && view.size[j] == check.size[j] && view.count[j] == check.count[j] );
+            }
+            
+            if ( !same ) {
+                
+                throw new MyException("OrderBook.checkConsistency: depth view out of sync\n" + view + check);
+            }
+        }
+        
+        for ( int i = 0; i < 2; i++ ) {
+            
+            DepthIndex cumulative = depthIndex( i == 0 );
+            
+            int[] price = new int[side( i == 0 ).size()];
+            long[] size = new long[price.length];
+            
+            int levels = side( i == 0 ).copyLevels( price, size, new int[price.length], price.length );
+            
+            if ( cumulative.getTotalVolume() != getBookDepth( i == 0 ) ) {
+                
+                throw new MyException("OrderBook.checkConsistency: cumulative depth total out of sync");
+            }
+            
+            for ( int j = 0; j < levels; j++ ) {
+                
+                if ( cumulative.volumeBetween( price[j], price[j] ) != size[j] ) {
+                    
+                    throw new MyException("OrderBook.checkConsistency: cumulative depth at " + price[j] + " out of sync");
+                }
+            }
+        }
     }
     
     public String printDetailed() { 
@@ -168,95 +599,25 @@ public class OrderBook {
     public String toString() { 
 
         StringBuffer buf = new StringBuffer();
-
-        //---- Bid side
-        
-        buf.append("OrderBook Bid (").append(bid.size()).append(" orders)\n");
-
-        Iterator<Order> bidIterator = bid.iterator();
-        int levelCount = 0, levelPrice = 0, aggSize = 0, aggCount = 0;
-
-        if ( bidIterator.hasNext() ) {
         
-            Order b = bidIterator.next();
+        for ( int i = 0; i < 2; i++ ) {
             
-            levelCount = 1;
-            levelPrice = b.limitPrice;
-            aggCount = 1;
-            aggSize = b.outstanding;
-        }
-
-        while ( bidIterator.hasNext() ) {
-
-            Order b = bidIterator.next();
-
-            if ( b.limitPrice != levelPrice ) {
-                
-                buf.append(levelCount).append(". ").append(aggSize).append("(").append(aggCount).append(" ord.) @").
-                        append( (double)levelPrice / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
-
-                levelCount++;
-                levelPrice = b.limitPrice;
-                aggCount = 1;
-                aggSize = b.outstanding;
-            }
-            else {
-                
-                aggCount++;
-                aggSize += b.outstanding;
-            }
-        }
-
-        if ( levelCount > 0 ) {
+            BookSide bs = ( i == 0 ) ? bid : ask;
             
-            buf.append(levelCount).append(". ").append(aggSize).append("(").append(aggCount).append(" ord.) @").
-                    append( (double)levelPrice / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
-        }
-        
-        //---- Ask side
-        
-        buf.append("OrderBook Ask (").append(ask.size()).append(" orders)\n");
-
-        Iterator<Order> askIterator = ask.iterator();
-        levelCount = levelPrice = aggSize = aggCount = 0;
-                
-        if ( askIterator.hasNext() ) {
-        
-            Order a = askIterator.next();
+            int[] price = new int[bs.size()], count = new int[bs.size()];
+            long[] size = new long[bs.size()];
             
-            levelCount = 1;
-            levelPrice = a.limitPrice;
-            aggCount = 1;
-            aggSize = a.outstanding;
-        }
-
-        while ( askIterator.hasNext() ) {
-
-            Order a = askIterator.next();
-
-            if ( a.limitPrice != levelPrice ) {
-                
-                buf.append(levelCount).append(". ").append(aggSize).append("(").append(aggCount).append(" ord.) @").
-                        append( (double)levelPrice / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
-                
-                levelCount++;
-                levelPrice = a.limitPrice;
-                aggCount = 1;
-                aggSize = a.outstanding;
-            }
-            else {
+            int levelCount = bs.copyLevels( price, size, count, bs.size() );
+            
+            buf.append( i == 0 ? "OrderBook Bid (" : "OrderBook Ask (" ).append(bs.size()).append(" orders)\n");
+            
+            for ( int j = 0; j < levelCount; j++ ) {
                 
-                aggCount++;
-                aggSize += a.outstanding;
+                buf.append(j + 1).append(". ").append(size[j]).append("(").append(count[j]).append(" ord.) @").
+                        append( (double)price[j] / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
             }
         }
 
-        if ( levelCount > 0 ) {
-            
-            buf.append(levelCount).append(". ").append(aggSize).append("(").append(aggCount).append(" ord.) @").
-                    append( (double)levelPrice / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
-        }
-
         return( buf.toString() );
     }
 
@@ -17,12 +17,18 @@ import ccloop.MyException;
 
 public abstract class OrderBookArtifact {
 
-    protected long id;
+    protected long id;    // unique within its book
+    protected int instrument;   // id of the book, see MarketState.addInstrument
 
     public OrderBookArtifact(){}
     
     public OrderBookArtifact( OrderBook ob ){
 
+        newId( ob );
+    }
+    
+    protected final void newId( OrderBook ob ) {
+        
         if ( ob.noOfArtifacts == Long.MAX_VALUE ) {
             
             throw new MyException("OrderBookArtifact: id numeric overflow");
@@ -30,10 +36,16 @@ public abstract class OrderBookArtifact {
         
         ob.noOfArtifacts++;
         id = ob.noOfArtifacts;
+        instrument = ob.instrument;
     }
     
     public long getId() {
         
         return id;
     }
+    
+    public int getInstrument() {
+        
+        return instrument;
+    }
 }
@@ -0,0 +1,116 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.Consts;
+import ccloop.TimeStamp;
+
+public final class OrderBookSnapshot implements QuoteInterface {    // immutable level-aggregated (L2) copy of both book sides
+    
+    public final TimeStamp time;
+    public final long topVersion;   // OrderBook.getTopVersion() when taken
+    
+    private final int bestBid, bestBidVol;
+    private final int bestAsk, bestAskVol;
+    
+    private final long bidDepth, askDepth;
+    
+    private final int[] bidPrice, askPrice;     // best first, exactly one entry per level
+    private final long[] bidSize, askSize;
+    private final int[] bidCount, askCount;
+    
+    OrderBookSnapshot( TimeStamp time, long topVersion, int bestBid, int bestBidVol, int bestAsk, int bestAskVol, 
+            long bidDepth, long askDepth, int[] bidPrice, long[] bidSize, int[] bidCount, int[] askPrice, long[] askSize, int[] askCount ) {
+        
+        // the arrays are owned by the snapshot from here on
+        
+        this.time = time;
+        this.topVersion = topVersion;
+        
+        this.bestBid = bestBid;
+        this.bestBidVol = bestBidVol;
+        this.bestAsk = bestAsk;
+        this.bestAskVol = bestAskVol;
+        
+        this.bidDepth = bidDepth;
+        this.askDepth = askDepth;
+        
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.bidCount = bidCount;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.askCount = askCount;
+    }
+    
+    @Override
+    public int getBestBid() { return bestBid; }
+    
+    @Override
+    public int getBestAsk() { return bestAsk; }
+    
+    @Override
+    public int getBestBidVol() { return bestBidVol; }
+    
+    @Override
+    public int getBestAskVol() { return bestAskVol; }
+    
+    @Override
+    public TimeStamp getTime() { return time; }
+    
+    public long getBookDepth( boolean bidSide ) { return bidSide ? bidDepth : askDepth; }
+    
+    public int getLevels( boolean bidSide ) { return bidSide ? bidPrice.length : askPrice.length; }
+    
+    public int getPrice( boolean bidSide, int level ) { return bidSide ? bidPrice[level] : askPrice[level]; }   // level 0 is the touch
+    
+    public long getSize( boolean bidSide, int level ) { return bidSide ? bidSize[level] : askSize[level]; }
+    
+    public int getCount( boolean bidSide, int level ) { return bidSide ? bidCount[level] : askCount[level]; }
+    
+    public long getVolumeUpTo( boolean bidSide, int level ) {   // cumulative size of the first level + 1 levels
+        
+        long total = 0;
+        
+        for ( int i = 0; i <= level && i < getLevels( bidSide ); i++ ) {
+            
+            total += getSize( bidSide, i );
+        }
+        
+        return total;
+    }
+    
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+        
+        buf.append("OrderBookSnapshot ").append(time).append("\n");
+        
+        for ( int i = 0; i < 2; i++ ) {
+            
+            boolean bidSide = ( i == 0 );
+            
+            buf.append( bidSide ? "Bid (" : "Ask (" ).append( getLevels( bidSide ) ).append(" levels)\n");
+            
+            for ( int j = 0; j < getLevels( bidSide ); j++ ) {
+                
+                buf.append(j + 1).append(". ").append( getSize( bidSide, j ) ).append("(").append( getCount( bidSide, j ) ).append(" ord.) @").
+                        append( (double) getPrice( bidSide, j ) / Math.pow(10,Consts.PRICEDIGITS) ).append("\n");
+            }
+        }
+
+        return( buf.toString() );
+    }
+}
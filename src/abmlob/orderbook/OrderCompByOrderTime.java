@@ -25,7 +25,7 @@ public final class OrderCompByOrderTime implements Comparator<Order>, Serializab
         final int EQUAL = 0;
         final int AFTER = 1;
         
-        if ( o1.getId() == o2.getId() ) {
+        if ( o1.getId() == o2.getId() && o1.getInstrument() == o2.getInstrument() ) {
             
             return EQUAL;
         }
@@ -43,7 +43,12 @@ public final class OrderCompByOrderTime implements Comparator<Order>, Serializab
             }
             else {  // EQUAL
                 
-                return o1.getId() > o2.getId() ? BEFORE : AFTER;  // convention for uniqueness purpose
+                if ( o1.getId() != o2.getId() ) {
+                    
+                    return o1.getId() > o2.getId() ? BEFORE : AFTER;  // convention for uniqueness purpose
+                }
+                
+                return o1.getInstrument() > o2.getInstrument() ? BEFORE : AFTER;  // same id in two books
             }
         }
     }
@@ -0,0 +1,175 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.MyException;
+import java.util.Arrays;
+
+public class OrderIndex {    // resting orders by id: open addressing with linear probing, no boxing
+    
+    private long[] keys;    // 0 marks a free slot (artifact ids start with 1)
+    private Order[] values;
+    private int mask;
+    private int size;
+    
+    public OrderIndex() {
+        
+        this( 1024 );
+    }
+    
+    public OrderIndex( int capacity ) {
+        
+        int c = 16;
+        
+        while ( c < 2 * capacity ) {
+            
+            c <<= 1;
+        }
+        
+        this.keys = new long[c];
+        this.values = new Order[c];
+        this.mask = c - 1;
+        this.size = 0;
+    }
+    
+    public int size() { return size; }
+    
+    private int slot( long id ) {
+        
+        long h = id * 0x9E3779B97F4A7C15L;    // Fibonacci hashing, ids are consecutive
+        
+        return (int) ( h ^ ( h >>> 32 ) ) & mask;
+    }
+    
+    public Order get( long id ) {
+        
+        int i = slot( id );
+        
+        while ( keys[i] != 0 ) {
+            
+            if ( keys[i] == id ) {
+                
+                return values[i];
+            }
+            
+            i = ( i + 1 ) & mask;
+        }
+        
+        return null;
+    }
+    
+    public void put( long id, Order o ) {
+        
+        if ( id <= 0 ) {
+            
+            throw new MyException("OrderIndex.put: order id must be strictly positive");
+        }
+        
+        int i = slot( id );
+        
+        while ( keys[i] != 0 ) {
+            
+            if ( keys[i] == id ) {
+                
+                values[i] = o;
+                return;
+            }
+            
+            i = ( i + 1 ) & mask;
+        }
+        
+        keys[i] = id;
+        values[i] = o;
+        size++;
+        
+        if ( 2 * size > keys.length ) {     // load factor 0.5
+            
+            resize( keys.length << 1 );
+        }
+    }
+    
+    public Order remove( long id ) {
+        
+        int i = slot( id );
+        
+        while ( keys[i] != id ) {
+            
+            if ( keys[i] == 0 ) {
+                
+                return null;
+            }
+            
+            i = ( i + 1 ) & mask;
+        }
+        
+        Order removed = values[i];
+        
+        //----- backward shift deletion: move up the entries of the probe chain, no tombstones
+        
+        int j = i;
+        
+        while ( true ) {
+            
+            j = ( j + 1 ) & mask;
+            
+            if ( keys[j] == 0 ) {
+                
+                break;
+            }
+            
+            int home = slot( keys[j] );
+            
+            // entry j may fill the hole at i only if its home slot is not cyclically inside (i, j]
+            
+            if ( ( j > i && ( home <= i || home > j ) ) || ( j < i && ( home <= i && home > j ) ) ) {
+                
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        
+        keys[i] = 0;
+        values[i] = null;
+        size--;
+        
+        return removed;
+    }
+    
+    public void clear() {
+        
+        Arrays.fill( keys, 0 );
+        Arrays.fill( values, null );
+        size = 0;
+    }
+    
+    private void resize( int capacity ) {
+        
+        long[] oldKeys = keys;
+        Order[] oldValues = values;
+        
+        keys = new long[capacity];
+        values = new Order[capacity];
+        mask = capacity - 1;
+        size = 0;
+        
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            
+            if ( oldKeys[i] != 0 ) {
+                
+                put( oldKeys[i], oldValues[i] );
+            }
+        }
+    }
+}
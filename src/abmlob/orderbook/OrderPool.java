@@ -0,0 +1,82 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import abmlob.agents.Agent;
+import ccloop.*;
+import java.util.ArrayDeque;
+
+public class OrderPool {    // recycles orders that reached a final state ( filled, cancelled, expired, killed )
+    
+    public long created;    // orders allocated on the heap
+    public long reused;     // orders handed out again after a release
+    
+    private ArrayDeque<Order> free;
+    
+    public OrderPool() {
+        
+        this.created = 0;
+        this.reused = 0;
+        this.free = new ArrayDeque<>();
+    }
+    
+    public Order acquire( OrderBook ob, Agent agent, boolean isBuy, boolean isLimit, int size, int price, TimeStamp expirationTime ) {
+        
+        Order o = free.pollFirst();
+        
+        if ( o == null ) {
+            
+            created++;
+            return new Order( ob, agent, isBuy, isLimit, size, price, expirationTime );
+        }
+        
+        reused++;
+        o.init( ob, agent, isBuy, isLimit, size, price, expirationTime );   // fresh id, as for a new order
+        
+        return o;
+    }
+    
+    public void release( Order o ) {    // the caller guarantees that nothing references o any more
+        
+        if ( o.released ) {
+            
+            throw new MyException("OrderPool.release: order #" + o.id + " released twice");
+        }
+        
+        o.released = true;
+        
+        if ( Consts.DEBUGPOOL ) {   // poison and never hand out again, so that any later use is caught
+            
+            o.agent = null;
+            o.outstanding = -1;
+            o.limitPrice = -1;
+            return;
+        }
+        
+        free.addFirst(o);
+    }
+    
+    public static void checkLive( Order o, String where ) {    // debug: use-after-release detection
+        
+        if ( o.released ) {
+            
+            throw new MyException(where + ": order #" + o.id + " used after release to the pool");
+        }
+    }
+    
+    public int size() {     // released orders ready for reuse
+        
+        return free.size();
+    }
+}
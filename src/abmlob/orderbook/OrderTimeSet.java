@@ -0,0 +1,117 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class OrderTimeSet {     // orders sorted as by OrderCompByOrderTime ( oldest last ), kept in a reused array
+    
+    private static final OrderCompByOrderTime COMP = new OrderCompByOrderTime();
+    
+    private Order[] orders = new Order[4];     // oldest first, so that new orders are appended
+    private int size = 0;
+    
+    public boolean add( Order o ) {
+        
+        int i = find( o );
+        
+        if ( i >= 0 ) {
+            
+            return false;   // already in the set
+        }
+        
+        i = -i - 1;
+        
+        if ( size == orders.length ) {
+            
+            orders = Arrays.copyOf( orders, 2 * orders.length );
+        }
+        
+        System.arraycopy( orders, i, orders, i + 1, size - i );
+        orders[i] = o;
+        size++;
+        
+        return true;
+    }
+    
+    public boolean remove( Order o ) {
+        
+        int i = find( o );
+        
+        if ( i < 0 ) {
+            
+            return false;
+        }
+        
+        System.arraycopy( orders, i + 1, orders, i, size - i - 1 );
+        orders[ --size ] = null;
+        
+        return true;
+    }
+    
+    public boolean contains( Order o ) { return find( o ) >= 0; }
+    
+    public boolean isEmpty() { return size == 0; }
+    
+    public int size() { return size; }
+    
+    public Order last() {   // the oldest order, as TreeSet.last()
+        
+        if ( size == 0 ) {
+            
+            throw new NoSuchElementException();
+        }
+        
+        return orders[0];
+    }
+    
+    public Order first() {  // the newest order
+        
+        if ( size == 0 ) {
+            
+            throw new NoSuchElementException();
+        }
+        
+        return orders[ size - 1 ];
+    }
+    
+    private int find( Order o ) {   // index of o, or -( insertion point ) - 1
+        
+        int lo = 0;
+        int hi = size - 1;
+        
+        while ( lo <= hi ) {
+            
+            int mid = ( lo + hi ) >>> 1;
+            int c = COMP.compare( orders[mid], o );
+            
+            if ( c == 0 ) {
+                
+                return mid;
+            }
+            
+            if ( c > 0 ) {  // orders[mid] is older
+                
+                lo = mid + 1;
+            }
+            else {
+                
+                hi = mid - 1;
+            }
+        }
+        
+        return -lo - 1;
+    }
+}
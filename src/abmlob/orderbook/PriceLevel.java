@@ -0,0 +1,136 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import ccloop.Consts;
+
+public class PriceLevel {     // all resting orders at one limit price, in time priority
+    
+    public int price;
+    
+    public long totalSize;  // running totals
+    public int orderCount;
+    
+    Order head;    // FIFO queue, linked through the orders themselves
+    Order tail;
+    
+    public PriceLevel( int price ) {
+        
+        this.price = price;
+        this.totalSize = 0;
+        this.orderCount = 0;
+    }
+    
+    void init( int price ) {   // reuse of an empty level, see PriceLevelBookSide
+        
+        this.price = price;
+        this.totalSize = 0;
+        this.orderCount = 0;
+    }
+    
+    public Order first() { return head; }
+    
+    public boolean isEmpty() { return head == null; }
+    
+    // time priority inside the level, same convention as OrderCompByBuyPriority/ OrderCompBySellPriority
+    
+    static boolean before( Order o1, Order o2 ) {
+        
+        int timeStampComp = o1.priorityTime.compareTo(o2.priorityTime);
+        
+        if ( timeStampComp != 0 ) {
+            
+            return timeStampComp < 0;
+        }
+
+        return o1.getId() < o2.getId();
+    }
+
+    void append( Order o ) {
+        
+        // new orders usually go last; an order that kept its priority (modify) is walked back into place
+        
+        Order after = tail;
+        
+        while ( after != null && before( o, after ) ) {
+            
+            after = after.prevInLevel;
+        }
+        
+        o.prevInLevel = after;
+        
+        if ( after == null ) {
+            
+            o.nextInLevel = head;
+            head = o;
+        }
+        else {
+            
+            o.nextInLevel = after.nextInLevel;
+            after.nextInLevel = o;
+        }
+        
+        if ( o.nextInLevel == null ) {
+            
+            tail = o;
+        }
+        else {
+            
+            o.nextInLevel.prevInLevel = o;
+        }
+        
+        o.level = this;
+        
+        totalSize += o.outstanding;
+        orderCount++;
+    }
+    
+    void unlink( Order o ) {
+        
+        if ( o.prevInLevel == null ) {
+            
+            head = o.nextInLevel;
+        }
+        else {
+            
+            o.prevInLevel.nextInLevel = o.nextInLevel;
+        }
+
+        if ( o.nextInLevel == null ) {
+            
+            tail = o.prevInLevel;
+        }
+        else {
+            
+            o.nextInLevel.prevInLevel = o.prevInLevel;
+        }
+        
+        o.prevInLevel = o.nextInLevel = null;
+        o.level = null;
+
+        totalSize -= o.outstanding;
+        orderCount--;
+    }
+    
+    @Override
+    public String toString() { 
+
+        StringBuffer buf = new StringBuffer();
+
+        buf.append("PriceLevel(").append(totalSize).append("(").append(orderCount).append(" ord.) @");
+        buf.append( (double)price / Math.pow(10,Consts.PRICEDIGITS) ).append(")");
+
+        return(buf.toString());
+    }
+}
@@ -0,0 +1,286 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class PriceLevelBookSide implements BookSide {  // sorted array of price levels, each holding a FIFO queue
+    
+    public boolean bidSide;
+    
+    // worst price first, best last: most changes happen at the top of the book, i.e. at the end of the array;
+    // emptied levels are kept for reuse, so a steady book allocates nothing
+    
+    private PriceLevel[] levels = new PriceLevel[64];
+    private int noOfLevels;
+    
+    private PriceLevel[] spare = new PriceLevel[64];
+    private int noOfSpare;
+    
+    private int noOfOrders;
+    
+    public PriceLevelBookSide( boolean bidSide ) {
+        
+        this.bidSide = bidSide;
+        
+        this.noOfLevels = 0;
+        this.noOfSpare = 0;
+        this.noOfOrders = 0;
+    }
+    
+    public PriceLevel bestLevel() { return noOfLevels == 0 ? null : levels[ noOfLevels - 1 ]; }
+    
+    public PriceLevel getLevel( int price ) {
+        
+        int i = find( price );
+        
+        return i < 0 ? null : levels[i];
+    }
+    
+    @Override
+    public boolean isEmpty() { return noOfOrders == 0; }
+    
+    @Override
+    public int size() { return noOfOrders; }
+    
+    @Override
+    public Order first() {
+        
+        return noOfLevels == 0 ? null : levels[ noOfLevels - 1 ].head;
+    }
+    
+    @Override
+    public Order pollFirst() {
+        
+        if ( noOfLevels == 0 ) {
+            
+            return null;
+        }
+        
+        PriceLevel best = levels[ noOfLevels - 1 ];
+        Order o = best.head;
+        
+        unlink( o, best );
+        
+        return o;
+    }
+
+    @Override
+    public long firstLevelSize() {
+        
+        return noOfLevels == 0 ? 0 : levels[ noOfLevels - 1 ].totalSize;
+    }
+
+    @Override
+    public int copyLevels( int[] price, long[] size, int[] count, int maxLevels ) {
+        
+        int n = 0;
+        
+        for ( int i = noOfLevels - 1; i >= 0 && n < maxLevels; i-- ) {
+            
+            PriceLevel level = levels[i];
+            
+            price[n] = level.price;
+            size[n] = level.totalSize;
+            count[n] = level.orderCount;
+            n++;
+        }
+        
+        return n;
+    }
+
+    @Override
+    public boolean add( Order o ) {
+        
+        if ( o.level != null ) {
+            
+            return false;   // already resting
+        }
+        
+        int i = find( o.limitPrice );
+        PriceLevel level;
+        
+        if ( i >= 0 ) {
+            
+            level = levels[i];
+        }
+        else {
+            
+            level = newLevel( o.limitPrice );
+            insert( -i - 1, level );
+        }
+        
+        level.append(o);
+        noOfOrders++;
+        
+        return true;
+    }
+    
+    @Override
+    public boolean remove( Order o ) {
+        
+        PriceLevel level = o.level;
+        
+        if ( level == null || getLevel( level.price ) != level ) {
+            
+            return false;   // not resting on this side
+        }
+        
+        unlink( o, level );
+        
+        return true;
+    }
+    
+    @Override
+    public void reduce( Order o, int size ) {
+        
+        o.outstanding -= size;
+        
+        if ( o.level != null ) {
+            
+            o.level.totalSize -= size;
+        }
+    }
+    
+    @Override
+    public boolean endsOnOrder( int price, long size ) {    // walks the one level only
+        
+        PriceLevel level = getLevel( price );
+        
+        for ( Order o = ( level == null ? null : level.first() ); o != null && size > 0; o = o.nextInLevel ) {
+            
+            size -= o.outstanding;
+        }
+        
+        return size == 0;
+    }
+    
+    private void unlink( Order o, PriceLevel level ) {
+        
+        level.unlink(o);
+        noOfOrders--;
+        
+        if ( level.isEmpty() ) {
+            
+            int i = levels[ noOfLevels - 1 ] == level ? noOfLevels - 1 : find( level.price );     // usually the best one
+            
+            System.arraycopy( levels, i + 1, levels, i, noOfLevels - i - 1 );
+            levels[ --noOfLevels ] = null;
+            
+            if ( noOfSpare == spare.length ) {
+                
+                spare = Arrays.copyOf( spare, 2 * spare.length );
+            }
+            
+            spare[ noOfSpare++ ] = level;
+        }
+    }
+    
+    private int find( int price ) {     // index of the level, or -( insertion point ) - 1
+        
+        int lo = 0;
+        int hi = noOfLevels - 1;
+        
+        while ( lo <= hi ) {
+            
+            int mid = ( lo + hi ) >>> 1;
+            int p = levels[mid].price;
+            
+            if ( p == price ) {
+                
+                return mid;
+            }
+            
+            if ( bidSide ? p < price : p > price ) {   // worse than price
+                
+                lo = mid + 1;
+            }
+            else {
+                
+                hi = mid - 1;
+            }
+        }
+        
+        return -lo - 1;
+    }
+    
+    private void insert( int i, PriceLevel level ) {
+        
+        if ( noOfLevels == levels.length ) {
+            
+            levels = Arrays.copyOf( levels, 2 * levels.length );
+        }
+        
+        System.arraycopy( levels, i, levels, i + 1, noOfLevels - i );
+        levels[i] = level;
+        noOfLevels++;
+    }
+    
+    private PriceLevel newLevel( int price ) {
+        
+        if ( noOfSpare == 0 ) {
+            
+            return new PriceLevel( price );
+        }
+        
+        PriceLevel level = spare[ --noOfSpare ];
+        spare[ noOfSpare ] = null;
+        level.init( price );
+        
+        return level;
+    }
+
+    @Override
+    public Iterator<Order> iterator() {     // best level first, time priority inside each level
+        
+        return new Iterator<Order>() {
+            
+            private int level = noOfLevels;
+            private Order next = null;
+            
+            @Override
+            public boolean hasNext() {
+                
+                while ( next == null && level > 0 ) {
+                    
+                    next = levels[ --level ].head;
+                }
+                
+                return next != null;
+            }
+
+            @Override
+            public Order next() {
+                
+                if ( !hasNext() ) {
+                    
+                    throw new NoSuchElementException();
+                }
+                
+                Order o = next;
+                next = o.nextInLevel;
+                
+                return o;
+            }
+
+            @Override
+            public void remove() {
+                
+                throw new UnsupportedOperationException("PriceLevelBookSide: read-only iterator");
+            }
+        };
+    }
+}
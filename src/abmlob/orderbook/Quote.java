@@ -48,6 +48,32 @@ public class Quote extends OrderBookArtifact implements QuoteInterface {
         this.bestAskVol = wq.getBestAskVol();
     }
 
+    Quote() {}  // reusable record, see set()
+    
+    public Quote ( Quote source ) {     // copy, same id
+        
+        super();
+        
+        this.id = source.id;
+        this.instrument = source.instrument;
+        this.time = source.time;
+        this.bestBid = source.bestBid;
+        this.bestBidVol = source.bestBidVol;
+        this.bestAsk = source.bestAsk;
+        this.bestAskVol = source.bestAskVol;
+    }
+    
+    void set( OrderBook ob, TimeStamp time, int bestBid, int bestBidVol, int bestAsk, int bestAskVol ) {
+        
+        newId( ob );    // quote id, as for a new quote
+        
+        this.time = time;
+        this.bestBid = bestBid;
+        this.bestBidVol = bestBidVol;
+        this.bestAsk = bestAsk;
+        this.bestAskVol = bestAskVol;
+    }
+
     @Override
     public int getBestBid() { return bestBid; }
     
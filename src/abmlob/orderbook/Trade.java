@@ -27,6 +27,17 @@ public class Trade extends OrderBookArtifact {
     public int price;
 
     public boolean buyerInit;
+    
+    public long buyOrderId;
+    public long sellOrderId;
+    
+    //----- level print ( MatchingEngine.LEVELPRINTS ): one trade per price level, the passive fills in time priority;
+    // the passive agent and order id above are then set only if the level had a single fill, null / 0 otherwise
+    
+    public int noOfFills = 0;   // 0 for a trade with a single counterparty
+    public Agent[] fillAgents;
+    public long[] fillOrderIds;
+    public int[] fillSizes;
 
     // convention: o1 buys, o2 sells
 
@@ -37,12 +48,88 @@ public class Trade extends OrderBookArtifact {
 
         this.buyAgent = buyOrder.agent;
         this.sellAgent = sellOrder.agent;
+        this.buyOrderId = buyOrder.getId();
+        this.sellOrderId = sellOrder.getId();
 
         this.price = price;
         this.size = size;
         this.buyerInit = buyerInit;
     }
     
+    Trade() {}  // reusable record, see set()
+    
+    public Trade( Trade source ) {  // copy, same id
+        
+        super();
+        
+        this.id = source.id;
+        this.instrument = source.instrument;
+        this.time = source.time;
+        this.buyAgent = source.buyAgent;
+        this.sellAgent = source.sellAgent;
+        this.price = source.price;
+        this.size = source.size;
+        this.buyerInit = source.buyerInit;
+        this.buyOrderId = source.buyOrderId;
+        this.sellOrderId = source.sellOrderId;
+        
+        this.noOfFills = source.noOfFills;
+        
+        if ( source.noOfFills > 0 ) {
+            
+            this.fillAgents = new Agent[ source.noOfFills ];
+            this.fillOrderIds = new long[ source.noOfFills ];
+            this.fillSizes = new int[ source.noOfFills ];
+            
+            System.arraycopy( source.fillAgents, 0, this.fillAgents, 0, source.noOfFills );
+            System.arraycopy( source.fillOrderIds, 0, this.fillOrderIds, 0, source.noOfFills );
+            System.arraycopy( source.fillSizes, 0, this.fillSizes, 0, source.noOfFills );
+        }
+    }
+    
+    void set( OrderBook ob, int price, int size, TimeStamp time, Order buyOrder, Order sellOrder, boolean buyerInit ) {
+        
+        newId( ob );    // trade id, as for a new trade
+        
+        this.time = time;
+        this.buyAgent = buyOrder.agent;
+        this.sellAgent = sellOrder.agent;
+        this.buyOrderId = buyOrder.getId();
+        this.sellOrderId = sellOrder.getId();
+        this.price = price;
+        this.size = size;
+        this.buyerInit = buyerInit;
+        this.noOfFills = 0;
+    }
+    
+    void setFills( Agent[] agents, long[] orderIds, int[] sizes, int n ) {    // turns the trade into a level print of n passive fills
+        
+        if ( fillAgents == null || fillAgents.length < n ) {
+            
+            fillAgents = new Agent[n];
+            fillOrderIds = new long[n];
+            fillSizes = new int[n];
+        }
+        
+        System.arraycopy( agents, 0, fillAgents, 0, n );
+        System.arraycopy( orderIds, 0, fillOrderIds, 0, n );
+        System.arraycopy( sizes, 0, fillSizes, 0, n );
+        noOfFills = n;
+        
+        if ( n > 1 ) {  // no single passive counterparty
+            
+            if ( buyerInit ) { sellAgent = null; sellOrderId = 0; } else { buyAgent = null; buyOrderId = 0; }
+        }
+    }
+    
+    public Agent passiveAgent( int fill ) { return noOfFills == 0 ? ( buyerInit ? sellAgent : buyAgent ) : fillAgents[fill]; }
+    
+    public long passiveOrderId( int fill ) { return noOfFills == 0 ? ( buyerInit ? sellOrderId : buyOrderId ) : fillOrderIds[fill]; }
+    
+    public int fillSize( int fill ) { return noOfFills == 0 ? size : fillSizes[fill]; }
+    
+    public int getNoOfFills() { return noOfFills == 0 ? 1 : noOfFills; }  // passive fills, 1 for a single-counterparty trade
+    
     @Override
     public String toString() { 
         
@@ -0,0 +1,135 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package abmlob.orderbook;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+public class TreeSetBookSide implements BookSide {    // orders sorted individually by price-time priority
+    
+    public TreeSet<Order> orders;
+    
+    public TreeSetBookSide( Comparator<Order> comp ) {
+        
+        this.orders = new TreeSet<>( comp );
+    }
+    
+    @Override
+    public boolean isEmpty() { return orders.isEmpty(); }
+    
+    @Override
+    public int size() { return orders.size(); }
+
+    @Override
+    public Order first() {
+        
+        return orders.isEmpty() ? null : orders.first();
+    }
+    
+    @Override
+    public Order pollFirst() { return orders.pollFirst(); }
+    
+    @Override
+    public long firstLevelSize() {
+        
+        long size = 0;
+        
+        Iterator<Order> itr = orders.iterator();
+        
+        if ( itr.hasNext() ) {
+            
+            Order first = itr.next();
+            size = first.outstanding;
+            
+            while ( itr.hasNext() ) {
+                
+                Order o = itr.next();
+                
+                if ( o.limitPrice != first.limitPrice ) {
+                    
+                    break;
+                }
+                
+                size += o.outstanding;
+            }
+        }
+        
+        return size;
+    }
+    
+    @Override
+    public int copyLevels( int[] price, long[] size, int[] count, int maxLevels ) {
+        
+        int n = 0;
+        
+        for ( Order o : orders ) {
+            
+            if ( n == 0 || o.limitPrice != price[n - 1] ) {    // new level
+                
+                if ( n == maxLevels ) {
+                    
+                    break;
+                }
+                
+                price[n] = o.limitPrice;
+                size[n] = 0;
+                count[n] = 0;
+                n++;
+            }
+            
+            size[n - 1] += o.outstanding;
+            count[n - 1]++;
+        }
+        
+        return n;
+    }
+    
+    @Override
+    public boolean add( Order o ) { return orders.add(o); }
+    
+    @Override
+    public boolean remove( Order o ) { return orders.remove(o); }
+    
+    @Override
+    public void reduce( Order o, int size ) {
+        
+        o.outstanding -= size;  // outstanding is not a sorting field
+    }
+
+    @Override
+    public boolean endsOnOrder( int price, long size ) {    // walks the better levels as well, O( orders ahead )
+        
+        Iterator<Order> itr = orders.iterator();
+        
+        while ( size > 0 && itr.hasNext() ) {
+            
+            Order o = itr.next();
+            
+            if ( o.limitPrice == price ) {
+                
+                size -= o.outstanding;
+            }
+            else if ( o.isBuy ? o.limitPrice < price : o.limitPrice > price ) {
+                
+                break;  // past the level
+            }
+        }
+        
+        return size == 0;
+    }
+    
+    @Override
+    public Iterator<Order> iterator() { return orders.iterator(); }
+}
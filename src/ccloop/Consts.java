@@ -25,24 +25,29 @@ public /*final*/ class Consts {  // Singleton Pattern
     public static int PRICEDIGITS;
     public static int CASHDIGITS;
 
+    public static int BOOKTYPE = 0;     // order book implementation: 0 - TreeSet of orders, 1 - price levels
+    public static int QUEUETYPE = 0;    // event queue implementation: 0 - TreeSet of events, 1 - 4-ary heap on packed keys, 2 - timing wheel
+
     public static boolean DEBUGMODE = false;     // print on screen console (trades)
     public static boolean DEBUGSUMMARY = false;  // print on screen console (analytics)
     public static boolean DEBUGDISK = false;    // export csv to disk (trades, quotes)
+    public static boolean DEBUGBOOK = false;    // re-check the incrementally maintained order book after each event (slow)
+    public static boolean DEBUGPOOL = false;    // never reuse released orders and fail on any use after release
 
     private Consts() {
         
     }
     
-    //----- decimal correction: cut-off/add digits
+    //----- decimal correction: cut-off/add digits ( see FixedPoint for long amounts )
     
     public static int priceToMoney ( int price ) {
         
-        return (int) ( price / Math.pow(10, PRICEDIGITS - CASHDIGITS) );
+        return FixedPoint.toInt( FixedPoint.priceToMoney( price ) );
     }
     
     public static int moneyToPrice ( int money ) {
 
-        return (int) ( money * Math.pow(10, PRICEDIGITS - CASHDIGITS) );
+        return FixedPoint.toInt( FixedPoint.moneyToPrice( money ) );
     }
 
 }
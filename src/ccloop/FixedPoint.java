@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2015 Alexandru Mandes.
+ *
+ * The code is available under a MIT License.
+ *
+ * Please cite: Mandes, A. (2015). Microstructure-based order placement in a 
+ * continuous double auction agent based model, Algorithmic Finance 4:3-4, 
+ * pp. 105-125. DOI: 10.3233/AF-150049. 
+ *
+ * Further reference: Cui, W. and Brabazon, A. (2012). An agent-based modeling 
+ * approach to study price impact, Computational Intelligence for Financial 
+ * Engineering & Economics (CIFEr), 2012 IEEE Conference on [proceedings], IEEE Press.
+ */
+package ccloop;
+
+public final class FixedPoint {     // price and money arithmetic on long with overflow checks
+    
+    // prices carry Consts.PRICEDIGITS decimals, money Consts.CASHDIGITS; the scale factor is cached and only 
+    // recomputed when a model changes the digits
+    
+    private static int priceDigits = Integer.MIN_VALUE;
+    private static int cashDigits = Integer.MIN_VALUE;
+    
+    private static long divisor = 1;    // price -> money: cut-off digits
+    private static long multiplier = 1; // price -> money: add digits ( CASHDIGITS > PRICEDIGITS )
+    
+    private FixedPoint() {}
+    
+    private static void rescale() {
+        
+        priceDigits = Consts.PRICEDIGITS;
+        cashDigits = Consts.CASHDIGITS;
+        
+        long factor = 1;
+        
+        for ( int i = Math.abs( priceDigits - cashDigits ); i > 0; i-- ) {
+            
+            factor = mul( factor, 10 );
+        }
+        
+        divisor = ( priceDigits >= cashDigits ) ? factor : 1;
+        multiplier = ( priceDigits >= cashDigits ) ? 1 : factor;
+    }
+    
+    public static long mul( long a, long b ) {
+        
+        long r = a * b;
+        
+        if ( ( ( Math.abs(a) | Math.abs(b) ) >>> 31 ) != 0 ) {     // only then can the product overflow
+            
+            if ( ( b != 0 && r / b != a ) || ( a == Long.MIN_VALUE && b == -1 ) ) {
+                
+                throw new MyException("FixedPoint.mul: overflow of " + a + " * " + b);
+            }
+        }
+        
+        return r;
+    }
+    
+    public static long priceToMoney( long price ) {     // truncates towards zero, as Consts.priceToMoney did
+        
+        if ( Consts.PRICEDIGITS != priceDigits || Consts.CASHDIGITS != cashDigits ) { rescale(); }
+        
+        return ( multiplier == 1 ) ? price / divisor : mul( price, multiplier );
+    }
+    
+    public static long moneyToPrice( long money ) {
+        
+        if ( Consts.PRICEDIGITS != priceDigits || Consts.CASHDIGITS != cashDigits ) { rescale(); }
+        
+        return ( divisor == 1 ) ? money / multiplier : mul( money, divisor );
+    }
+    
+    public static long value( long size, long price ) {     // money paid for size shares at price
+        
+        return priceToMoney( mul( size, price ) );
+    }
+    
+    public static int toInt( long v ) {
+        
+        if ( v != (int) v ) {
+            
+            throw new MyException("FixedPoint.toInt: " + v + " does not fit an int");
+        }
+        
+        return (int) v;
+    }
+}
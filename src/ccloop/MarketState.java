@@ -38,8 +38,15 @@ public class MarketState {
     public int instancedAgents;
     public ArrayList<Agent> agentPop;
     
-    public OrderBook orderBook;
+    public OrderBook orderBook;     // instrument 0
     public MatchingEngine matchingEngine;
+    public OrderPool orderPool;
+    
+    // all instruments run on the one event loop: clock, rng, event ids and histories are shared, 
+    // so dispatching instruments on worker threads would need those split per instrument first
+    
+    public ArrayList<OrderBook> orderBooks;     // indexed by instrument id
+    public ArrayList<MatchingEngine> matchingEngines;
     
     public Deque<Trade> tradeHistory;   // double ended queue
     public LinkedList<Quote> quoteHistory;
@@ -55,8 +62,14 @@ public class MarketState {
         this.instancedAgents = 0;
         this.agentPop = new ArrayList<>();
                 
-        this.orderBook = new OrderBook();
-        this.matchingEngine = new MatchingEngine(this, this.orderBook);
+        this.orderBooks = new ArrayList<>();
+        this.matchingEngines = new ArrayList<>();
+        
+        addInstrument();
+        
+        this.orderBook = orderBooks.get(0);
+        this.matchingEngine = matchingEngines.get(0);
+        this.orderPool = new OrderPool();
         
         this.tradeHistory = new ArrayDeque();
         this.quoteHistory = new LinkedList();
@@ -65,13 +78,44 @@ public class MarketState {
 
     public void processNextEvent ( EventDispatcher dispatcher ) {
         
-        Event nextEvt = eventQueue.queue.first();
-        
-        eventQueue.queue.pollFirst();
+        Event nextEvt = eventQueue.queue.pollFirst();
 
         dispatcher.dispatch( nextEvt, this );
     }
     
+    protected MatchingEngine newMatchingEngine( OrderBook ob ) {    // called from the constructor, models override it to change the engine
+        
+        return new MatchingEngine( this, ob );
+    }
+    
+    public int addInstrument() {    // new book and engine, returns the instrument id
+        
+        int instrument = orderBooks.size();
+        
+        OrderBook ob = new OrderBook();
+        ob.instrument = instrument;
+        
+        orderBooks.add( ob );
+        matchingEngines.add( newMatchingEngine( ob ) );
+        
+        return instrument;
+    }
+    
+    public int getNoOfInstruments() {
+        
+        return orderBooks.size();
+    }
+    
+    public OrderBook getOrderBook( int instrument ) {
+        
+        return orderBooks.get( instrument );
+    }
+    
+    public MatchingEngine getMatchingEngine( int instrument ) {
+        
+        return matchingEngines.get( instrument );
+    }
+    
     public void addAgent(Agent agent) {
 
         agentPop.add(agent);